@@ -0,0 +1,116 @@
+package Benchmarks;
+
+import KnowledgePieces.Fact;
+import KnowledgePieces.ProgramParser;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Programas sinteticos para los benchmarks, con una cantidad de
+ * argumentos indicada y valores generados con una semilla fija, de modo
+ * que cada ejecucion mida el mismo programa
+ */
+public final class Programs {
+
+    private static final long SEED = 42;
+
+    private Programs() {
+    }
+
+    /**
+     * Programa con una cadena de reglas y conflictos: cada argumento es un
+     * ave que vuela, uno de cada cuatro es ademas un pinguino que no vuela
+     *
+     * @param size Cantidad de argumentos
+     * @return Texto del programa
+     */
+    public static String conflicts(int size) {
+        Random random = new Random(SEED);
+        StringBuilder program = new StringBuilder();
+
+        for (int i = 0; i < size; i++) {
+            fact(program, random, "bird", i);
+
+            if (i % 4 == 0) {
+                fact(program, random, "penguin", i);
+            }
+        }
+
+        rule(program, random, "flies(X) :- bird(X).");
+        rule(program, random, "~flies(X) :- penguin(X).");
+        rule(program, random, "migrates(X) :- flies(X).");
+        rule(program, random, "nests(X) :- bird(X), migrates(X).");
+
+        return program.toString();
+    }
+
+    /**
+     * Programa en el que cada argumento se infiere por dos reglas, por lo
+     * que cada derivacion repetida provoca una agregacion y la
+     * reconstruccion del grafo por encima del hecho agregado
+     *
+     * @param size Cantidad de argumentos
+     * @return Texto del programa
+     */
+    public static String aggregations(int size) {
+        Random random = new Random(SEED);
+        StringBuilder program = new StringBuilder();
+
+        for (int i = 0; i < size; i++) {
+            fact(program, random, "p", i);
+            fact(program, random, "q", i);
+        }
+
+        rule(program, random, "r(X) :- p(X).");
+        rule(program, random, "r(X) :- q(X).");
+        rule(program, random, "s(X) :- r(X).");
+        rule(program, random, "t(X) :- s(X), p(X).");
+
+        return program.toString();
+    }
+
+    /**
+     * Interpreta un programa
+     *
+     * @param program Texto del programa
+     * @return Interprete con los hechos y reglas
+     */
+    public static ProgramParser parse(String program) {
+        ProgramParser parser = new ProgramParser();
+        parser.parse(program);
+        return parser;
+    }
+
+    /**
+     * Copia los hechos iniciales, ya que el motor modifica los hechos que
+     * recibe al asignar los valores debilitados
+     *
+     * @param facts Hechos a copiar
+     * @return Hechos nuevos con los mismos valores
+     */
+    public static List<Fact> copy(List<Fact> facts) {
+        List<Fact> copies = new ArrayList<>(facts.size());
+
+        for (Fact fact : facts) {
+            copies.add(new Fact(fact.getNameId(), fact.getArgumentId(), fact.getAttributes().clone()));
+        }
+
+        return copies;
+    }
+
+    private static void fact(StringBuilder program, Random random, String name, int argument) {
+        program.append(name).append("(a").append(argument).append("). ");
+        attributes(program, random);
+    }
+
+    private static void rule(StringBuilder program, Random random, String rule) {
+        program.append(rule).append(' ');
+        attributes(program, random);
+    }
+
+    private static void attributes(StringBuilder program, Random random) {
+        program.append(String.format(Locale.ROOT, "{%.2f, %.2f}%n", random.nextDouble(), random.nextDouble()));
+    }
+}
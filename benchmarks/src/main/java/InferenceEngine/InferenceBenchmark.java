@@ -0,0 +1,187 @@
+package InferenceEngine;
+
+import Benchmarks.Programs;
+import KnowledgePieces.Fact;
+import KnowledgePieces.KnowledgePiece;
+import KnowledgePieces.ProgramParser;
+import KnowledgePieces.Rule;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks del motor de inferencia sobre programas de distinto tamaño.
+ * Se mide la generacion completa del grafo, con y sin agregaciones, y por
+ * separado la evaluacion de las funciones de soporte, agregacion y
+ * conflicto y el tratamiento de los conflictos. Esta clase esta en el
+ * paquete del motor para usar sus metodos de paquete
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector", "-Djava.awt.headless=true"})
+public class InferenceBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    int size;
+
+    // Programa con conflictos y programa con agregaciones
+    private ProgramParser conflicts;
+    private ProgramParser aggregations;
+    private String[][] functions;
+
+    // Entradas de las funciones, armadas a partir del grafo ya generado
+    private InferenceEngine engine;
+    private List<Rule> supportRules;
+    private List<List<Fact>> supportFacts;
+    private List<Fact[]> aggregationPairs;
+    private List<Pair> conflictPairs;
+    private CompiledFunctions compiled;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        conflicts = Programs.parse(Programs.conflicts(size));
+        aggregations = Programs.parse(Programs.aggregations(size));
+        functions = ProgramParser.defaultFunctions(conflicts.getFacts().getFirst().getAttributes().length);
+        compiled = new CompiledFunctions(functions);
+
+        engine = new InferenceEngine(Programs.copy(conflicts.getFacts()), conflicts.getRules(), functions);
+        ArgumentativeGraph graph = engine.buildTree();
+
+        // Los antecedentes de cada regla son los hechos que tienen una arista hacia su mismo destino
+        Map<Fact, List<Fact>> antecedents = new HashMap<>();
+        Map<Fact, Rule> derivedBy = new HashMap<>();
+
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : graph.edges().entrySet()) {
+            for (Fact target : entry.getValue()) {
+                if (entry.getKey() instanceof Rule rule) {
+                    derivedBy.put(target, rule);
+                } else {
+                    antecedents.computeIfAbsent(target, t -> new ArrayList<>()).add((Fact) entry.getKey());
+                }
+            }
+        }
+
+        supportRules = new ArrayList<>();
+        supportFacts = new ArrayList<>();
+
+        for (Map.Entry<Fact, Rule> entry : derivedBy.entrySet()) {
+            Rule rule = entry.getValue();
+            List<Fact> body = antecedents.get(entry.getKey());
+
+            if (body != null && body.size() == rule.getBodyIds().length) {
+                // Los antecedentes van en el orden del cuerpo de la regla
+                body.sort(Comparator.comparingInt(fact -> position(rule, fact)));
+                supportRules.add(rule);
+                supportFacts.add(body);
+            }
+        }
+
+        aggregationPairs = new ArrayList<>();
+        List<Fact> facts = aggregations.getFacts();
+
+        for (int i = 0; i + 1 < facts.size(); i += 2) {
+            aggregationPairs.add(new Fact[] {facts.get(i), facts.get(i + 1)});
+        }
+
+        conflictPairs = graph.conflictiveNodes();
+    }
+
+    // Posicion del predicado de un hecho en el cuerpo de una regla
+    private static int position(Rule rule, Fact fact) {
+        for (int i = 0; i < rule.getBodyIds().length; i++) {
+            if (rule.getBodyIds()[i] == fact.getNameId()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Motor con el grafo generado una sola vez por prueba. conflict
+     * vuelve a calcular los valores debilitados a partir de los atributos
+     * de los hechos, por lo que se puede repetir sobre el mismo grafo;
+     * solo agrega los pares a la lista del grafo, que se vacia despues de
+     * cada llamada para que no crezca. Ni la generacion ni su memoria
+     * asignada forman parte de la medicion
+     */
+    @State(Scope.Thread)
+    public static class ConflictState {
+
+        @Param({"100", "1000", "10000"})
+        int size;
+
+        private InferenceEngine engine;
+        private List<Pair> pairs;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            ProgramParser program = Programs.parse(Programs.conflicts(size));
+            String[][] functions = ProgramParser.defaultFunctions(program.getFacts().getFirst().getAttributes().length);
+            engine = new InferenceEngine(Programs.copy(program.getFacts()), program.getRules(), functions);
+            pairs = engine.buildTree().conflictiveNodes();
+            pairs.clear();
+        }
+    }
+
+    // Generacion completa del grafo, incluida la copia de los hechos iniciales
+    @Benchmark
+    public ArgumentativeGraph buildTree() {
+        return new InferenceEngine(Programs.copy(conflicts.getFacts()), conflicts.getRules(), functions).buildTree();
+    }
+
+    // Generacion de un grafo en el que cada hecho inferido se agrega y dispara reBuilTree
+    @Benchmark
+    public ArgumentativeGraph buildTreeWithAggregations() {
+        return new InferenceEngine(Programs.copy(aggregations.getFacts()), aggregations.getRules(), functions).buildTree();
+    }
+
+    @Benchmark
+    public void support(Blackhole blackhole) {
+        for (int i = 0; i < supportRules.size(); i++) {
+            blackhole.consume(engine.support(supportFacts.get(i), supportRules.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void calculateAggregation(Blackhole blackhole) {
+        for (Fact[] pair : aggregationPairs) {
+            blackhole.consume(engine.calculateAggregation(pair[0], pair[1]));
+        }
+    }
+
+    @Benchmark
+    public void calculateAttack(Blackhole blackhole) {
+        for (Pair pair : conflictPairs) {
+            blackhole.consume(InferenceEngine.calculateAttack(pair.first(), pair.second(), compiled));
+            blackhole.consume(InferenceEngine.calculateAttack(pair.second(), pair.first(), compiled));
+        }
+    }
+
+    // Busqueda de los pares en conflicto y calculo de los valores debilitados sobre un grafo ya generado
+    @Benchmark
+    public int conflict(ConflictState state) {
+        state.engine.conflict();
+        int pairs = state.pairs.size();
+        state.pairs.clear();
+        return pairs;
+    }
+}
@@ -0,0 +1,61 @@
+package Views;
+
+import Benchmarks.Programs;
+import InferenceEngine.ArgumentativeGraph;
+import InferenceEngine.InferenceEngine;
+import KnowledgePieces.ProgramParser;
+import java.util.concurrent.TimeUnit;
+import org.jgrapht.Graph;
+import org.jgrapht.ext.JGraphXAdapter;
+import org.jgrapht.graph.DefaultEdge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks de la construccion del grafo de la vista, separada de la
+ * inferencia: el grafo JGraphT con los nodos CA, y el mismo grafo con el
+ * adaptador JGraphX, que es lo que hace initializeGraph. No se crean
+ * ventanas, por lo que se ejecuta con -Djava.awt.headless=true. Los
+ * tamaños son menores que los del motor porque el adaptador crece mucho
+ * mas rapido que el grafo: con 1000 argumentos ya tarda varios segundos
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector", "-Djava.awt.headless=true"})
+public class GraphViewBenchmark {
+
+    @Param({"100", "300", "1000"})
+    int size;
+
+    private ArgumentativeGraph graph;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ProgramParser program = Programs.parse(Programs.conflicts(size));
+        String[][] functions = ProgramParser.defaultFunctions(program.getFacts().getFirst().getAttributes().length);
+        graph = new InferenceEngine(program.getFacts(), program.getRules(), functions).buildTree();
+    }
+
+    @Benchmark
+    public Graph<GraphView.GraphNode, DefaultEdge> buildGraph() {
+        return GraphView.buildGraph(graph.edges(), graph.conflictiveNodes());
+    }
+
+    @Benchmark
+    public JGraphXAdapter<GraphView.GraphNode, DefaultEdge> initializeGraph() {
+        return new JGraphXAdapter<>(GraphView.buildGraph(graph.edges(), graph.conflictiveNodes()));
+    }
+}
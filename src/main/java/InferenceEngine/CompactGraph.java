@@ -0,0 +1,318 @@
+package InferenceEngine;
+
+import KnowledgePieces.Fact;
+import KnowledgePieces.KnowledgePiece;
+import KnowledgePieces.Rule;
+import KnowledgePieces.SymbolTable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Representacion compacta e inmutable de un grafo argumentativo. Cada nodo
+ * se identifica con un entero, las aristas se guardan en formato CSR
+ * (desplazamientos por nodo en arreglos de destinos y de origenes) y los
+ * atributos en columnas de valores primitivos, sin un objeto por nodo ni
+ * por arista. Se construye una unica vez a partir del grafo generado, que
+ * junto con el motor puede descartarse despues
+ */
+public final class CompactGraph {
+
+    // Regla de cada nodo, o -1 si el nodo es un hecho
+    private final int[] ruleOf;
+    // Nombre y argumento de cada nodo que es un hecho
+    private final int[] nameIds;
+    private final int[] argumentIds;
+    // Reglas del grafo, referenciadas por los nodos que son reglas
+    private final Rule[] rules;
+    // Aristas salientes de cada nodo: destinos entre forwardOffsets[n] y forwardOffsets[n + 1]
+    private final int[] forwardOffsets;
+    private final int[] forwardTargets;
+    // Aristas entrantes de cada nodo: origenes entre backwardOffsets[n] y backwardOffsets[n + 1]
+    private final int[] backwardOffsets;
+    private final int[] backwardSources;
+    // Valores de cada atributo para todos los nodos, y valores debilitados de los hechos
+    private final double[][] attributes;
+    private final double[][] deltaAttributes;
+    // Nodos de cada par en conflicto
+    private final int[] conflictFirst;
+    private final int[] conflictSecond;
+
+    // Grafo a partir de sus arreglos, ya construidos o leidos de un archivo
+    CompactGraph(int[] ruleOf, int[] nameIds, int[] argumentIds, Rule[] rules,
+            int[] forwardOffsets, int[] forwardTargets, int[] backwardOffsets, int[] backwardSources,
+            double[][] attributes, double[][] deltaAttributes, int[] conflictFirst, int[] conflictSecond) {
+        this.ruleOf = ruleOf;
+        this.nameIds = nameIds;
+        this.argumentIds = argumentIds;
+        this.rules = rules;
+        this.forwardOffsets = forwardOffsets;
+        this.forwardTargets = forwardTargets;
+        this.backwardOffsets = backwardOffsets;
+        this.backwardSources = backwardSources;
+        this.attributes = attributes;
+        this.deltaAttributes = deltaAttributes;
+        this.conflictFirst = conflictFirst;
+        this.conflictSecond = conflictSecond;
+    }
+
+    /**
+     * Construye la representacion compacta de un grafo argumentativo
+     *
+     * @param graph Grafo generado por el motor de inferencia
+     * @return Grafo compacto con los mismos nodos, aristas, valores y conflictos
+     */
+    public static CompactGraph of(ArgumentativeGraph graph) {
+        Map<KnowledgePiece, Integer> ids = new IdentityHashMap<>();
+        List<KnowledgePiece> nodes = new ArrayList<>();
+        int edgeCount = 0;
+
+        // Se numeran los nodos en el orden en que aparecen
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : graph.edges().entrySet()) {
+            id(entry.getKey(), ids, nodes);
+
+            for (Fact target : entry.getValue()) {
+                id(target, ids, nodes);
+            }
+            edgeCount += entry.getValue().size();
+        }
+
+        for (Pair pair : graph.conflictiveNodes()) {
+            id(pair.first(), ids, nodes);
+            id(pair.second(), ids, nodes);
+        }
+
+        int n = nodes.size();
+        int width = 0;
+        int[] ruleOf = new int[n];
+        int[] nameIds = new int[n];
+        int[] argumentIds = new int[n];
+        Map<Rule, Integer> ruleIds = new HashMap<>();
+        List<Rule> rules = new ArrayList<>();
+
+        for (KnowledgePiece node : nodes) {
+            width = Math.max(width, node.getAttributes() == null ? 0 : node.getAttributes().length);
+        }
+
+        double[][] attributes = new double[width][n];
+        double[][] deltaAttributes = new double[width][n];
+
+        for (int v = 0; v < n; v++) {
+            KnowledgePiece node = nodes.get(v);
+            double[] values = node.getAttributes();
+            double[] deltas = values;
+
+            if (node instanceof Fact fact) {
+                ruleOf[v] = -1;
+                nameIds[v] = fact.getNameId();
+                argumentIds[v] = fact.getArgumentId();
+                deltas = fact.getDeltaAttributes();
+            } else {
+                Rule rule = (Rule) node;
+                ruleOf[v] = ruleIds.computeIfAbsent(rule, r -> {
+                    rules.add(r);
+                    return rules.size() - 1;
+                });
+                nameIds[v] = rule.getHeadId();
+                argumentIds[v] = -1;
+            }
+
+            // Los atributos que faltan quedan sin valor
+            for (int k = 0; k < width; k++) {
+                attributes[k][v] = values != null && k < values.length ? values[k] : Double.NaN;
+                deltaAttributes[k][v] = deltas != null && k < deltas.length ? deltas[k] : Double.NaN;
+            }
+        }
+
+        // Aristas salientes: se cuentan por origen y se ubican a continuacion de las anteriores
+        int[] forwardOffsets = new int[n + 1];
+        int[] forwardTargets = new int[edgeCount];
+        int[] inDegree = new int[n + 1];
+
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : graph.edges().entrySet()) {
+            forwardOffsets[ids.get(entry.getKey()) + 1] = entry.getValue().size();
+        }
+
+        for (int v = 0; v < n; v++) {
+            forwardOffsets[v + 1] += forwardOffsets[v];
+        }
+
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : graph.edges().entrySet()) {
+            int position = forwardOffsets[ids.get(entry.getKey())];
+
+            for (Fact target : entry.getValue()) {
+                int t = ids.get(target);
+                forwardTargets[position++] = t;
+                inDegree[t + 1]++;
+            }
+        }
+
+        // Aristas entrantes: se invierten las salientes
+        int[] backwardOffsets = inDegree;
+        int[] backwardSources = new int[edgeCount];
+
+        for (int v = 0; v < n; v++) {
+            backwardOffsets[v + 1] += backwardOffsets[v];
+        }
+
+        int[] next = Arrays.copyOf(backwardOffsets, n);
+
+        for (int v = 0; v < n; v++) {
+            for (int e = forwardOffsets[v]; e < forwardOffsets[v + 1]; e++) {
+                backwardSources[next[forwardTargets[e]]++] = v;
+            }
+        }
+
+        int[] conflictFirst = new int[graph.conflictiveNodes().size()];
+        int[] conflictSecond = new int[conflictFirst.length];
+
+        for (int c = 0; c < conflictFirst.length; c++) {
+            conflictFirst[c] = ids.get(graph.conflictiveNodes().get(c).first());
+            conflictSecond[c] = ids.get(graph.conflictiveNodes().get(c).second());
+        }
+
+        return new CompactGraph(ruleOf, nameIds, argumentIds, rules.toArray(new Rule[0]),
+                forwardOffsets, forwardTargets, backwardOffsets, backwardSources,
+                attributes, deltaAttributes, conflictFirst, conflictSecond);
+    }
+
+    // Obtiene el identificador de un nodo, asignando el siguiente si es nuevo
+    private static int id(KnowledgePiece node, Map<KnowledgePiece, Integer> ids, List<KnowledgePiece> nodes) {
+        return ids.computeIfAbsent(node, piece -> {
+            nodes.add(piece);
+            return nodes.size() - 1;
+        });
+    }
+
+    public int nodeCount() {
+        return ruleOf.length;
+    }
+
+    public int edgeCount() {
+        return forwardTargets.length;
+    }
+
+    public int attributeCount() {
+        return attributes.length;
+    }
+
+    public int conflictCount() {
+        return conflictFirst.length;
+    }
+
+    public boolean isRule(int node) {
+        return ruleOf[node] >= 0;
+    }
+
+    // Regla de un nodo que es una regla
+    public Rule getRule(int node) {
+        return rules[ruleOf[node]];
+    }
+
+    // Predicado de un hecho, o de la cabeza de una regla
+    public int getNameId(int node) {
+        return nameIds[node];
+    }
+
+    // Argumento de un hecho, o -1 si el nodo es una regla
+    public int getArgumentId(int node) {
+        return argumentIds[node];
+    }
+
+    public double getAttribute(int node, int attribute) {
+        return attributes[attribute][node];
+    }
+
+    public double getDeltaAttribute(int node, int attribute) {
+        return deltaAttributes[attribute][node];
+    }
+
+    public int outDegree(int node) {
+        return forwardOffsets[node + 1] - forwardOffsets[node];
+    }
+
+    // Destino de la i-esima arista saliente de un nodo
+    public int successor(int node, int i) {
+        return forwardTargets[forwardOffsets[node] + i];
+    }
+
+    public int inDegree(int node) {
+        return backwardOffsets[node + 1] - backwardOffsets[node];
+    }
+
+    // Origen de la i-esima arista entrante de un nodo
+    public int predecessor(int node, int i) {
+        return backwardSources[backwardOffsets[node] + i];
+    }
+
+    public int conflictFirst(int conflict) {
+        return conflictFirst[conflict];
+    }
+
+    public int conflictSecond(int conflict) {
+        return conflictSecond[conflict];
+    }
+
+    // Texto de un nodo, igual al de la pieza de conocimiento que representa
+    public String label(int node) {
+        return isRule(node)
+                ? getRule(node).toString()
+                : SymbolTable.symbol(nameIds[node]) + '(' + SymbolTable.symbol(argumentIds[node]) + ").";
+    }
+
+    /**
+     * Vuelve a crear la estructura de aristas y conflictos con objetos,
+     * para las vistas que trabajan con ArgumentativeGraph. Los hechos
+     * son nuevos objetos con los mismos valores, las reglas son las originales
+     *
+     * @return Grafo argumentativo equivalente
+     */
+    public ArgumentativeGraph toArgumentativeGraph() {
+        KnowledgePiece[] pieces = new KnowledgePiece[nodeCount()];
+
+        for (int v = 0; v < pieces.length; v++) {
+            if (isRule(v)) {
+                pieces[v] = getRule(v);
+            } else {
+                Fact fact = new Fact(nameIds[v], argumentIds[v], column(attributes, v));
+                fact.setDeltaAttributes(column(deltaAttributes, v));
+                pieces[v] = fact;
+            }
+        }
+
+        Map<KnowledgePiece, List<Fact>> edges = new HashMap<>();
+
+        for (int v = 0; v < pieces.length; v++) {
+            if (outDegree(v) > 0) {
+                List<Fact> targets = new ArrayList<>(outDegree(v));
+
+                for (int i = 0; i < outDegree(v); i++) {
+                    targets.add((Fact) pieces[successor(v, i)]);
+                }
+                edges.put(pieces[v], targets);
+            }
+        }
+
+        List<Pair> conflicts = new ArrayList<>(conflictCount());
+
+        for (int c = 0; c < conflictCount(); c++) {
+            conflicts.add(new Pair((Fact) pieces[conflictFirst[c]], (Fact) pieces[conflictSecond[c]]));
+        }
+
+        return new ArgumentativeGraph(edges, conflicts);
+    }
+
+    // Valores de los atributos de un nodo
+    private static double[] column(double[][] columns, int node) {
+        double[] values = new double[columns.length];
+
+        for (int k = 0; k < values.length; k++) {
+            values[k] = columns[k][node];
+        }
+
+        return values;
+    }
+}
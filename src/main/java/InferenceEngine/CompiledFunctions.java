@@ -0,0 +1,189 @@
+package InferenceEngine;
+
+import KnowledgePieces.Rule;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleBinaryOperator;
+import net.objecthunter.exp4j.Expression;
+import net.objecthunter.exp4j.ExpressionBuilder;
+import net.objecthunter.exp4j.function.Function;
+
+/**
+ * Clase que compila una unica vez la matriz de funciones de soporte,
+ * agregacion y conflicto, para evaluarlas sin volver a analizar
+ * las expresiones en cada inferencia
+ */
+public class CompiledFunctions {
+
+    public static final int SUPPORT = 0;
+    public static final int AGGREGATION = 1;
+    public static final int CONFLICT = 2;
+
+    // El modulo de vectores solo esta presente si la JVM se inicio con --add-modules jdk.incubator.vector
+    private static final boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    // Funciones max y min, que exp4j no incluye
+    private static final Function MAX = new Function("max", 2) {
+        @Override
+        public double apply(double... args) {
+            return Math.max(args[0], args[1]);
+        }
+    };
+    private static final Function MIN = new Function("min", 2) {
+        @Override
+        public double apply(double... args) {
+            return Math.min(args[0], args[1]);
+        }
+    };
+
+    private final String[][] functions;
+    private final DoubleBinaryOperator[][] operators;
+    // Evaluador vectorial, o null si no hay soporte de vectores
+    private final VectorFunctions vector;
+    // Columnas cuyas funciones son todas estandar y pueden evaluarse con vectores
+    private final boolean[] vectorized;
+    // Clase generada para cada regla
+    private final Map<Rule, CompiledRule> rules;
+
+    /**
+     * Constructor principal
+     *
+     * @param functions Matriz de funciones por atributo, con las columnas
+     * soporte, agregacion y conflicto
+     */
+    public CompiledFunctions(String[][] functions) {
+        this.functions = functions;
+        this.operators = new DoubleBinaryOperator[functions.length][3];
+
+        StandardOperator[][] standard = new StandardOperator[functions.length][3];
+        this.vectorized = new boolean[3];
+
+        for (int k = 0; k < 3; k++) {
+            vectorized[k] = VECTOR_API;
+
+            for (int i = 0; i < functions.length; i++) {
+                // Las funciones estandar se evaluan directamente, el resto con exp4j
+                standard[i][k] = StandardOperator.recognize(functions[i][k]);
+                operators[i][k] = standard[i][k] != null ? standard[i][k] : compile(functions[i][k]);
+                vectorized[k] &= standard[i][k] != null;
+            }
+        }
+        
+        // Con pocos atributos la agregacion escalar es mas rapida
+        vectorized[AGGREGATION] = vectorized[AGGREGATION] && functions.length >= VectorFunctions.AGGREGATION_WIDTH;
+
+        this.vector = VECTOR_API ? new VectorFunctions(standard) : null;
+        this.rules = new ConcurrentHashMap<>();
+    }
+
+    // Copia las funciones ya compiladas, con evaluadores propios
+    private CompiledFunctions(CompiledFunctions original) {
+        this.functions = original.functions;
+        this.operators = new DoubleBinaryOperator[functions.length][3];
+        this.vector = original.vector; // El evaluador vectorial no guarda estado
+        this.vectorized = original.vectorized;
+        this.rules = original.rules; // Las clases generadas no guardan estado
+
+        for (int i = 0; i < functions.length; i++) {
+            for (int k = 0; k < 3; k++) {
+                operators[i][k] = original.operators[i][k] instanceof ExpressionOperator operator
+                        ? operator.copy()
+                        : original.operators[i][k];
+            }
+        }
+    }
+
+    // Analiza la expresion una unica vez
+    private static DoubleBinaryOperator compile(String function) {
+        return new ExpressionOperator(new ExpressionBuilder(function)
+                .variables("X", "Y")
+                .functions(MAX, MIN)
+                .build());
+    }
+
+    public DoubleBinaryOperator support(int attribute) {
+        return operators[attribute][SUPPORT];
+    }
+
+    public DoubleBinaryOperator aggregation(int attribute) {
+        return operators[attribute][AGGREGATION];
+    }
+
+    public DoubleBinaryOperator conflict(int attribute) {
+        return operators[attribute][CONFLICT];
+    }
+
+    /**
+     * Genera la clase especializada de cada regla con estas funciones, una
+     * unica vez por regla, para reutilizarla con distintos conjuntos de
+     * hechos. Las copias comparten las reglas ya especializadas
+     *
+     * @param rules Reglas del programa
+     * @return Las mismas funciones compiladas
+     */
+    public CompiledFunctions compile(List<Rule> rules) {
+        DoubleBinaryOperator[] supportOperators = new DoubleBinaryOperator[operators.length];
+
+        for (int i = 0; i < operators.length; i++) {
+            supportOperators[i] = operators[i][SUPPORT];
+        }
+
+        for (Rule rule : rules) {
+            this.rules.computeIfAbsent(rule, r -> RuleCompiler.compile(r, supportOperators));
+        }
+
+        return this;
+    }
+
+    // Clase especializada de una regla, o null si la regla no se compilo con estas funciones
+    CompiledRule rule(Rule rule) {
+        return rules.get(rule);
+    }
+
+    // Indica si la columna de funciones puede evaluarse con vectores
+    boolean isVectorized(int column) {
+        return vectorized[column];
+    }
+
+    VectorFunctions vector() {
+        return vector;
+    }
+
+    public String[][] getFunctions() {
+        return functions;
+    }
+
+    /**
+     * Las expresiones de exp4j guardan el valor de sus variables, por lo
+     * que cada hilo que evalue funciones debe usar su propia copia
+     *
+     * @return Copia independiente de las funciones compiladas
+     */
+    public CompiledFunctions copy() {
+        return new CompiledFunctions(this);
+    }
+
+    /**
+     * Evaluador de una expresion de exp4j ya analizada
+     */
+    private static final class ExpressionOperator implements DoubleBinaryOperator {
+
+        private final Expression expression;
+
+        ExpressionOperator(Expression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public double applyAsDouble(double x, double y) {
+            return expression.setVariable("X", x)
+                    .setVariable("Y", y)
+                    .evaluate();
+        }
+
+        ExpressionOperator copy() {
+            return new ExpressionOperator(new Expression(expression));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package InferenceEngine;
+
+import KnowledgePieces.Fact;
+import java.util.List;
+
+/**
+ * Regla especializada por RuleCompiler. Cada implementacion es una clase
+ * oculta generada para una unica regla, con los predicados del cuerpo,
+ * los operadores de soporte y los valores de la regla como constantes
+ */
+interface CompiledRule {
+
+    /**
+     * Reune en la lista los hechos de cada predicado del cuerpo para un
+     * argumento
+     *
+     * @return Verdadero si la cantidad de hechos es la de antecedentes de
+     * la regla
+     */
+    boolean body(FactIndex index, int argument, List<Fact> antecedents);
+
+    /**
+     * Calcula el soporte de la regla
+     *
+     * @return Valores de los atributos, o null si las funciones de soporte
+     * no son estandar o los antecedentes no son los especializados
+     */
+    double[] support(List<Fact> antecedents);
+
+    /**
+     * Hechos con un predicado y argumento dados, en el orden de la lista
+     * de hechos
+     */
+    @FunctionalInterface
+    interface FactIndex {
+
+        List<Fact> facts(int predicate, int argument);
+    }
+}
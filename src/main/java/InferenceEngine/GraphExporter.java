@@ -0,0 +1,316 @@
+package InferenceEngine;
+
+import KnowledgePieces.Fact;
+import KnowledgePieces.KnowledgePiece;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Clase que escribe un grafo argumentativo en DOT, GraphML o JSON Lines
+ * a medida que lo recorre, sin armar otra estructura. Los nodos son los
+ * hechos y reglas con sus atributos y atributos debilitados, las aristas
+ * son las de soporte y las de conflicto (CA). Un grafo compacto se
+ * escribe por indice: primero todos los nodos y luego las aristas. Un
+ * ArgumentativeGraph se recorre directamente: cada nodo se escribe la
+ * primera vez que aparece, antes de su primera arista, y su numero se
+ * guarda en la propia pieza, por lo que no debe escribirse a la vez otro
+ * grafo que comparta nodos
+ */
+public final class GraphExporter {
+
+    public enum Format {
+        DOT, GRAPHML, JSONL
+    }
+
+    private final Format format;
+    private final Writer writer;
+    // Cantidad de nodos ya escritos de un ArgumentativeGraph
+    private int nodeCount;
+
+    private GraphExporter(Format format, Writer writer) {
+        this.format = format;
+        this.writer = writer;
+    }
+
+    /**
+     * Escribe un grafo compacto. El escritor no se cierra
+     *
+     * @param graph Grafo a escribir
+     * @param format Formato de salida
+     * @param writer Destino
+     */
+    public static void export(CompactGraph graph, Format format, Writer writer) throws IOException {
+        new GraphExporter(format, writer).write(graph);
+        writer.flush();
+    }
+
+    /**
+     * Escribe un grafo compacto en UTF-8. El flujo no se cierra
+     *
+     * @param graph Grafo a escribir
+     * @param format Formato de salida
+     * @param out Destino
+     */
+    public static void export(CompactGraph graph, Format format, OutputStream out) throws IOException {
+        export(graph, format, new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Escribe un grafo generado por el motor, numerando los nodos igual que
+     * CompactGraph.of. El escritor no se cierra
+     *
+     * @param graph Grafo a escribir
+     * @param format Formato de salida
+     * @param writer Destino
+     */
+    public static void export(ArgumentativeGraph graph, Format format, Writer writer) throws IOException {
+        new GraphExporter(format, writer).write(graph);
+        writer.flush();
+    }
+
+    /**
+     * Escribe un grafo generado por el motor en UTF-8. El flujo no se cierra
+     *
+     * @param graph Grafo a escribir
+     * @param format Formato de salida
+     * @param out Destino
+     */
+    public static void export(ArgumentativeGraph graph, Format format, OutputStream out) throws IOException {
+        export(graph, format, new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    private void write(CompactGraph graph) throws IOException {
+        begin();
+
+        for (int v = 0; v < graph.nodeCount(); v++) {
+            boolean fact = !graph.isRule(v);
+            // Todos los hechos tienen el ancho del grafo, cada regla el suyo
+            int width = fact ? graph.attributeCount() : graph.getRule(v).getAttributes().length;
+            double[] attributes = new double[width];
+            double[] deltaAttributes = fact ? new double[width] : null;
+
+            for (int k = 0; k < width; k++) {
+                attributes[k] = graph.getAttribute(v, k);
+
+                if (fact) {
+                    deltaAttributes[k] = graph.getDeltaAttribute(v, k);
+                }
+            }
+            node(v, fact, graph.label(v), attributes, deltaAttributes);
+        }
+
+        for (int v = 0; v < graph.nodeCount(); v++) {
+            for (int i = 0; i < graph.outDegree(v); i++) {
+                edge(v, graph.successor(v, i), false);
+            }
+        }
+
+        for (int c = 0; c < graph.conflictCount(); c++) {
+            edge(graph.conflictFirst(c), graph.conflictSecond(c), true);
+        }
+
+        end();
+    }
+
+    private void write(ArgumentativeGraph graph) throws IOException {
+        // Se borran los numeros de una escritura anterior
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : graph.edges().entrySet()) {
+            entry.getKey().setExportId(0);
+
+            for (Fact target : entry.getValue()) {
+                target.setExportId(0);
+            }
+        }
+
+        for (Pair pair : graph.conflictiveNodes()) {
+            pair.first().setExportId(0);
+            pair.second().setExportId(0);
+        }
+
+        begin();
+
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : graph.edges().entrySet()) {
+            int source = node(entry.getKey());
+
+            for (Fact target : entry.getValue()) {
+                edge(source, node(target), false);
+            }
+        }
+
+        for (Pair pair : graph.conflictiveNodes()) {
+            edge(node(pair.first()), node(pair.second()), true);
+        }
+
+        end();
+    }
+
+    // Numero de una pieza; la primera vez se le asigna el siguiente y se escribe el nodo
+    private int node(KnowledgePiece piece) throws IOException {
+        if (piece.getExportId() == 0) {
+            piece.setExportId(++nodeCount);
+            node(nodeCount - 1, piece instanceof Fact, piece.toString(), piece.getAttributes(),
+                    piece instanceof Fact fact ? fact.getDeltaAttributes() : null);
+        }
+        return piece.getExportId() - 1;
+    }
+
+    private void begin() throws IOException {
+        switch (format) {
+            case DOT -> writer.write("digraph LAF {\n  node [fontname=\"Segoe UI\"];\n");
+            case GRAPHML -> writer.write("""
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <graphml xmlns="http://graphml.graphdrawing.org/xmlns">
+                      <key id="label" for="node" attr.name="label" attr.type="string"/>
+                      <key id="kind" for="all" attr.name="kind" attr.type="string"/>
+                      <key id="attributes" for="node" attr.name="attributes" attr.type="string"/>
+                      <key id="deltaAttributes" for="node" attr.name="deltaAttributes" attr.type="string"/>
+                      <graph id="LAF" edgedefault="directed">
+                    """);
+            case JSONL -> {
+            }
+        }
+    }
+
+    private void end() throws IOException {
+        switch (format) {
+            case DOT -> writer.write("}\n");
+            case GRAPHML -> writer.write("  </graph>\n</graphml>\n");
+            case JSONL -> {
+            }
+        }
+    }
+
+    private void node(int node, boolean fact, String label, double[] attributes, double[] deltaAttributes) throws IOException {
+        String id = id(node);
+        String kind = fact ? "fact" : "rule";
+
+        switch (format) {
+            case DOT -> {
+                // Solo se escapa el texto de la pieza; los \n que separan los valores son de DOT
+                StringBuilder text = new StringBuilder(escapeDot(label));
+                appendValues(text.append("\\n"), attributes, " | ");
+
+                if (deltaAttributes != null) {
+                    appendValues(text.append("\\n"), deltaAttributes, " | ");
+                }
+
+                writer.write("  " + id + " [shape=" + (fact ? "box" : "ellipse")
+                        + ", label=\"" + text + "\"];\n");
+            }
+            case GRAPHML -> {
+                writer.write("    <node id=\"" + id + "\">");
+                writer.write("<data key=\"label\">" + escapeXml(label) + "</data>");
+                writer.write("<data key=\"kind\">" + kind + "</data>");
+                writer.write("<data key=\"attributes\">" + appendValues(new StringBuilder(), attributes, ",") + "</data>");
+
+                if (deltaAttributes != null) {
+                    writer.write("<data key=\"deltaAttributes\">" + appendValues(new StringBuilder(), deltaAttributes, ",") + "</data>");
+                }
+                writer.write("</node>\n");
+            }
+            case JSONL -> {
+                StringBuilder line = new StringBuilder("{\"type\":\"node\",\"id\":\"").append(id)
+                        .append("\",\"kind\":\"").append(kind)
+                        .append("\",\"label\":\"").append(escapeJson(label))
+                        .append("\",\"attributes\":");
+                appendJson(line, attributes);
+
+                if (deltaAttributes != null) {
+                    appendJson(line.append(",\"deltaAttributes\":"), deltaAttributes);
+                }
+                writer.write(line.append("}\n").toString());
+            }
+        }
+    }
+
+    private void edge(int source, int target, boolean conflict) throws IOException {
+        String kind = conflict ? "conflict" : "support";
+
+        switch (format) {
+            case DOT -> writer.write("  " + id(source) + " -> " + id(target)
+                    + (conflict ? " [label=\"CA\", style=dashed, dir=both, color=red];\n" : ";\n"));
+            case GRAPHML -> writer.write("    <edge source=\"" + id(source) + "\" target=\"" + id(target)
+                    + "\"><data key=\"kind\">" + kind + "</data></edge>\n");
+            case JSONL -> writer.write("{\"type\":\"edge\",\"source\":\"" + id(source) + "\",\"target\":\"" + id(target)
+                    + "\",\"kind\":\"" + kind + "\"}\n");
+        }
+    }
+
+    private static String id(int node) {
+        return "n" + node;
+    }
+
+    private static StringBuilder appendValues(StringBuilder text, double[] values, String separator) {
+        if (values == null) {
+            return text;
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                text.append(separator);
+            }
+            text.append(String.format(Locale.ROOT, "%.4f", values[i]));
+        }
+
+        return text;
+    }
+
+    // Los valores sin definir se escriben como null, ya que JSON no admite NaN
+    private static void appendJson(StringBuilder text, double[] values) {
+        if (values == null) {
+            text.append("null");
+            return;
+        }
+
+        text.append('[');
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(Double.isFinite(values[i]) ? Double.toString(values[i]) : "null");
+        }
+
+        text.append(']');
+    }
+
+    // Las barras se escapan antes que las comillas, para no duplicar las que agregan estas
+    private static String escapeDot(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String escapeXml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String escapeJson(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\t' -> escaped.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,449 @@
+package InferenceEngine;
+
+import KnowledgePieces.Rule;
+import KnowledgePieces.SymbolTable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clase que guarda un grafo compacto en un archivo binario y lo vuelve a
+ * cargar sin generar el grafo otra vez. El archivo contiene, en orden:
+ * la tabla de simbolos, las reglas, la tabla de nodos, las aristas
+ * salientes y entrantes en formato CSR, las columnas de atributos y de
+ * atributos debilitados, y los pares en conflicto. Los arreglos se leen en
+ * bloque desde el archivo mapeado en memoria, por ventanas, ya que un
+ * unico mapeo no puede superar los 2 GB. Al leer se validan las
+ * cantidades y los indices, y un archivo truncado o corrupto se informa
+ * con una IOException
+ */
+public final class GraphSnapshot {
+
+    // Identificacion del formato: "LAFG" y version
+    private static final int MAGIC = 0x4C414647;
+    private static final int VERSION = 1;
+
+    // Tamaño maximo de cada ventana mapeada
+    private static final int WINDOW = 1 << 30;
+
+    private GraphSnapshot() {
+    }
+
+    /**
+     * Guarda un grafo compacto
+     *
+     * @param graph Grafo a guardar
+     * @param file Archivo destino, que se reemplaza si existe
+     */
+    public static void write(CompactGraph graph, Path file) throws IOException {
+        int n = graph.nodeCount();
+        int width = graph.attributeCount();
+        Map<String, Integer> symbolIds = new HashMap<>();
+        List<byte[]> symbols = new ArrayList<>();
+        Map<Rule, Integer> ruleIds = new IdentityHashMap<>();
+        List<Rule> rules = new ArrayList<>();
+        int[] nameIds = new int[n];
+        int[] argumentIds = new int[n];
+        int[] ruleOf = new int[n];
+
+        // Los identificadores de SymbolTable dependen de la ejecucion, se guardan los simbolos
+        for (int v = 0; v < n; v++) {
+            if (graph.isRule(v)) {
+                ruleOf[v] = ruleIds.computeIfAbsent(graph.getRule(v), rule -> {
+                    rules.add(rule);
+                    return rules.size() - 1;
+                });
+                nameIds[v] = -1;
+                argumentIds[v] = -1;
+            } else {
+                ruleOf[v] = -1;
+                nameIds[v] = symbol(SymbolTable.symbol(graph.getNameId(v)), symbolIds, symbols);
+                argumentIds[v] = symbol(SymbolTable.symbol(graph.getArgumentId(v)), symbolIds, symbols);
+            }
+        }
+
+        // Cada regla se guarda como el texto de sus predicados y sus atributos
+        int[][] ruleAtoms = new int[rules.size()][];
+        long size = 4L * 4;
+
+        for (int r = 0; r < rules.size(); r++) {
+            Rule rule = rules.get(r);
+            ruleAtoms[r] = new int[rule.getBody().size() + 1];
+            ruleAtoms[r][0] = symbol(atom(rule.getHead(), rule.getHeadTerms()), symbolIds, symbols);
+
+            for (int i = 0; i < rule.getBody().size(); i++) {
+                ruleAtoms[r][i + 1] = symbol(atom(rule.getBody().get(i), rule.getBodyTerms().get(i)), symbolIds, symbols);
+            }
+            size += 4L * (ruleAtoms[r].length + 2) + 8L * rule.getAttributes().length;
+        }
+
+        for (byte[] symbol : symbols) {
+            size += 4 + symbol.length;
+        }
+
+        size += 4L * 4 + 4L * 3 * n + 4L * 2 * (n + 1) + 4L * 2 * graph.edgeCount()
+                + 8L * 2 * width * n + 4L * 2 * graph.conflictCount();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Window buffer = new Window(channel, FileChannel.MapMode.READ_WRITE, size);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(symbols.size()).putInt(rules.size());
+
+            for (byte[] symbol : symbols) {
+                buffer.putInt(symbol.length).put(symbol);
+            }
+
+            for (int r = 0; r < rules.size(); r++) {
+                buffer.putInt(ruleAtoms[r].length);
+
+                for (int atom : ruleAtoms[r]) {
+                    buffer.putInt(atom);
+                }
+
+                buffer.putInt(rules.get(r).getAttributes().length);
+
+                for (double value : rules.get(r).getAttributes()) {
+                    buffer.putDouble(value);
+                }
+            }
+
+            buffer.putInt(n).putInt(graph.edgeCount()).putInt(width).putInt(graph.conflictCount());
+            buffer.putInts(ruleOf);
+            buffer.putInts(nameIds);
+            buffer.putInts(argumentIds);
+
+            // Aristas salientes y entrantes
+            for (int pass = 0; pass < 2; pass++) {
+                int offset = 0;
+
+                for (int v = 0; v < n; v++) {
+                    buffer.putInt(offset);
+                    offset += pass == 0 ? graph.outDegree(v) : graph.inDegree(v);
+                }
+                buffer.putInt(offset);
+
+                for (int v = 0; v < n; v++) {
+                    int degree = pass == 0 ? graph.outDegree(v) : graph.inDegree(v);
+
+                    for (int i = 0; i < degree; i++) {
+                        buffer.putInt(pass == 0 ? graph.successor(v, i) : graph.predecessor(v, i));
+                    }
+                }
+            }
+
+            for (int k = 0; k < width; k++) {
+                for (int v = 0; v < n; v++) {
+                    buffer.putDouble(graph.getAttribute(v, k));
+                }
+            }
+
+            for (int k = 0; k < width; k++) {
+                for (int v = 0; v < n; v++) {
+                    buffer.putDouble(graph.getDeltaAttribute(v, k));
+                }
+            }
+
+            for (int c = 0; c < graph.conflictCount(); c++) {
+                buffer.putInt(graph.conflictFirst(c));
+            }
+
+            for (int c = 0; c < graph.conflictCount(); c++) {
+                buffer.putInt(graph.conflictSecond(c));
+            }
+
+            buffer.force();
+        }
+    }
+
+    /**
+     * Carga un grafo guardado con write
+     *
+     * @param file Archivo a leer
+     * @return Grafo compacto con los mismos nodos, aristas, valores y conflictos
+     */
+    public static CompactGraph read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Window buffer = new Window(channel, FileChannel.MapMode.READ_ONLY, channel.size());
+
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+
+            int[] symbolIds = new int[count(buffer, buffer.getInt(), 4)];
+            Rule[] rules = new Rule[count(buffer, buffer.getInt(), 8)];
+            String[] symbols = new String[symbolIds.length];
+
+            for (int s = 0; s < symbols.length; s++) {
+                byte[] bytes = new byte[count(buffer, buffer.getInt(), 1)];
+                buffer.get(bytes);
+                symbols[s] = new String(bytes, StandardCharsets.UTF_8);
+                symbolIds[s] = SymbolTable.intern(symbols[s]);
+            }
+
+            for (int r = 0; r < rules.length; r++) {
+                int[] atoms = buffer.getInts(count(buffer, buffer.getInt(), 4));
+
+                if (atoms.length == 0) {
+                    throw corrupt("rule without head");
+                }
+
+                List<String> body = new ArrayList<>(atoms.length - 1);
+
+                for (int i = 1; i < atoms.length; i++) {
+                    body.add(symbols[index(atoms[i], symbols.length, "symbol")]);
+                }
+
+                double[] attributes = buffer.getDoubles(count(buffer, buffer.getInt(), 8));
+                rules[r] = new Rule(symbols[index(atoms[0], symbols.length, "symbol")], body, attributes);
+            }
+
+            if (buffer.remaining() < 16) {
+                throw corrupt("truncated node table");
+            }
+
+            int n = count(buffer, buffer.getInt(), 3 * 4 + 2 * 4);
+            int edgeCount = count(buffer, buffer.getInt(), 2 * 4);
+            int width = buffer.getInt();
+            int conflictCount = count(buffer, buffer.getInt(), 2 * 4);
+
+            // Un grafo sin nodos no tiene atributos
+            if (width < 0 || (long) Math.max(n, 1) * width > buffer.remaining() / 16) {
+                throw corrupt("attribute count out of range");
+            }
+
+            int[] ruleOf = buffer.getInts(n);
+            int[] nameIds = buffer.getInts(n);
+            int[] argumentIds = buffer.getInts(n);
+
+            // Se traducen los simbolos del archivo a los identificadores de esta ejecucion
+            for (int v = 0; v < n; v++) {
+                if (ruleOf[v] >= 0) {
+                    nameIds[v] = rules[index(ruleOf[v], rules.length, "rule")].getHeadId();
+                } else if (ruleOf[v] == -1) {
+                    nameIds[v] = symbolIds[index(nameIds[v], symbols.length, "symbol")];
+                    argumentIds[v] = symbolIds[index(argumentIds[v], symbols.length, "symbol")];
+                } else {
+                    throw corrupt("rule index out of range");
+                }
+            }
+
+            int[] forwardOffsets = offsets(buffer.getInts(n + 1), edgeCount);
+            int[] forwardTargets = nodes(buffer.getInts(edgeCount), ruleOf, true);
+            int[] backwardOffsets = offsets(buffer.getInts(n + 1), edgeCount);
+            int[] backwardSources = nodes(buffer.getInts(edgeCount), ruleOf, false);
+            double[][] attributes = getDoubleColumns(buffer, width, n);
+            double[][] deltaAttributes = getDoubleColumns(buffer, width, n);
+            int[] conflictFirst = nodes(buffer.getInts(conflictCount), ruleOf, true);
+            int[] conflictSecond = nodes(buffer.getInts(conflictCount), ruleOf, true);
+
+            if (buffer.remaining() != 0) {
+                throw corrupt("unexpected data after the conflicts");
+            }
+
+            return new CompactGraph(ruleOf, nameIds, argumentIds, rules,
+                    forwardOffsets, forwardTargets, backwardOffsets, backwardSources,
+                    attributes, deltaAttributes, conflictFirst, conflictSecond);
+        }
+    }
+
+    /**
+     * Valida una cantidad leida del archivo: no puede ser negativa ni
+     * ocupar mas bytes de los que quedan, de modo que un archivo corrupto
+     * no provoque reservas de memoria enormes
+     *
+     * @param elementSize Bytes minimos que ocupa cada elemento
+     */
+    private static int count(Window buffer, int count, int elementSize) throws IOException {
+        if (count < 0 || (long) count * elementSize > buffer.remaining()) {
+            throw corrupt("count out of range");
+        }
+        return count;
+    }
+
+    private static int index(int index, int length, String kind) throws IOException {
+        if (index < 0 || index >= length) {
+            throw corrupt(kind + " index out of range");
+        }
+        return index;
+    }
+
+    // Los desplazamientos CSR empiezan en 0, no decrecen y terminan en la cantidad de aristas
+    private static int[] offsets(int[] offsets, int edgeCount) throws IOException {
+        for (int v = 0; v < offsets.length; v++) {
+            if (offsets[v] < (v == 0 ? 0 : offsets[v - 1]) || offsets[v] > edgeCount) {
+                throw corrupt("edge offsets out of range");
+            }
+        }
+
+        if (offsets[0] != 0 || offsets[offsets.length - 1] != edgeCount) {
+            throw corrupt("edge offsets out of range");
+        }
+        return offsets;
+    }
+
+    // Los destinos de las aristas y los nodos en conflicto son siempre hechos
+    private static int[] nodes(int[] nodes, int[] ruleOf, boolean facts) throws IOException {
+        for (int v : nodes) {
+            index(v, ruleOf.length, "node");
+
+            if (facts && ruleOf[v] >= 0) {
+                throw corrupt("rule used as a fact");
+            }
+        }
+        return nodes;
+    }
+
+    private static IOException corrupt(String reason) {
+        return new IOException("Corrupt graph snapshot (" + reason + ")");
+    }
+
+    // Obtiene la posicion de un simbolo en la tabla del archivo, agregandolo si es nuevo
+    private static int symbol(String symbol, Map<String, Integer> symbolIds, List<byte[]> symbols) {
+        return symbolIds.computeIfAbsent(symbol, s -> {
+            symbols.add(s.getBytes(StandardCharsets.UTF_8));
+            return symbols.size() - 1;
+        });
+    }
+
+    // Texto de un predicado de una regla con sus argumentos
+    private static String atom(String predicate, List<String> terms) {
+        return predicate + '(' + String.join(",", terms) + ')';
+    }
+
+    private static double[][] getDoubleColumns(Window buffer, int width, int n) throws IOException {
+        double[][] columns = new double[width][];
+
+        for (int k = 0; k < width; k++) {
+            columns[k] = buffer.getDoubles(n);
+        }
+
+        return columns;
+    }
+
+    /**
+     * Acceso secuencial a un archivo mapeado por ventanas de a lo sumo
+     * WINDOW bytes. Cuando un valor no entra en lo que queda de la ventana
+     * actual se mapea la siguiente a partir de la posicion actual; los
+     * arreglos se copian en bloque, por partes si cruzan ventanas. Leer
+     * mas alla del fin del archivo produce una IOException
+     */
+    private static final class Window {
+
+        private final FileChannel channel;
+        private final FileChannel.MapMode mode;
+        private final long size;
+        // Posicion en el archivo del inicio de la ventana actual
+        private long start;
+        private MappedByteBuffer buffer;
+
+        Window(FileChannel channel, FileChannel.MapMode mode, long size) throws IOException {
+            this.channel = channel;
+            this.mode = mode;
+            this.size = size;
+            map(0);
+        }
+
+        long remaining() {
+            return size - start - buffer.position();
+        }
+
+        int getInt() throws IOException {
+            return require(4).getInt();
+        }
+
+        Window putInt(int value) throws IOException {
+            require(4).putInt(value);
+            return this;
+        }
+
+        Window putDouble(double value) throws IOException {
+            require(8).putDouble(value);
+            return this;
+        }
+
+        void get(byte[] values) throws IOException {
+            for (int i = 0; i < values.length; ) {
+                int length = Math.min(values.length - i, require(1).remaining());
+                buffer.get(values, i, length);
+                i += length;
+            }
+        }
+
+        Window put(byte[] values) throws IOException {
+            for (int i = 0; i < values.length; ) {
+                int length = Math.min(values.length - i, require(1).remaining());
+                buffer.put(values, i, length);
+                i += length;
+            }
+            return this;
+        }
+
+        int[] getInts(int length) throws IOException {
+            int[] values = new int[length];
+
+            for (int i = 0; i < length; ) {
+                int count = Math.min(length - i, require(4).remaining() / 4);
+                buffer.asIntBuffer().get(values, i, count);
+                buffer.position(buffer.position() + 4 * count);
+                i += count;
+            }
+
+            return values;
+        }
+
+        void putInts(int[] values) throws IOException {
+            for (int i = 0; i < values.length; ) {
+                int count = Math.min(values.length - i, require(4).remaining() / 4);
+                buffer.asIntBuffer().put(values, i, count);
+                buffer.position(buffer.position() + 4 * count);
+                i += count;
+            }
+        }
+
+        double[] getDoubles(int length) throws IOException {
+            double[] values = new double[length];
+
+            for (int i = 0; i < length; ) {
+                int count = Math.min(length - i, require(8).remaining() / 8);
+                buffer.asDoubleBuffer().get(values, i, count);
+                buffer.position(buffer.position() + 8 * count);
+                i += count;
+            }
+
+            return values;
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        // Ventana con al menos los bytes indicados, mapeando la siguiente si hace falta
+        private MappedByteBuffer require(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                if (remaining() < bytes) {
+                    throw new IOException("Unexpected end of graph snapshot");
+                }
+
+                if (mode == FileChannel.MapMode.READ_WRITE) {
+                    buffer.force();
+                }
+                map(start + buffer.position());
+            }
+            return buffer;
+        }
+
+        private void map(long position) throws IOException {
+            start = position;
+            buffer = channel.map(mode, position, Math.min(WINDOW, size - position));
+        }
+    }
+}
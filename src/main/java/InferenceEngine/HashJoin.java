@@ -0,0 +1,263 @@
+package InferenceEngine;
+
+import KnowledgePieces.Fact;
+import KnowledgePieces.Rule;
+import KnowledgePieces.SymbolTable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Clase que evalua una regla con varias variables combinando los hechos
+ * de los predicados de su cuerpo con joins por hash. El orden de los
+ * predicados se elige de forma voraz: primero el que tiene mas argumentos
+ * ya ligados y, entre ellos, el que tiene menos hechos. Para cada predicado
+ * se construye un indice por los valores de sus argumentos ligados, que
+ * luego se consulta con cada combinacion parcial de hechos
+ */
+class HashJoin {
+
+    private final Rule rule;
+    // Variable de cada argumento de cada predicado del cuerpo, o -1 si es una constante
+    private final int[][] bodyVariables;
+    // Constante de cada argumento de cada predicado del cuerpo, o -1 si es una variable
+    private final int[][] bodyConstants;
+    // Variable o constante de cada argumento de la cabeza, con el mismo criterio
+    private final int[] headVariables;
+    private final int[] headConstants;
+    private final int variableCount;
+
+    HashJoin(Rule rule) {
+        Map<String, Integer> variables = new HashMap<>();
+        List<List<String>> bodyTerms = rule.getBodyTerms();
+
+        this.rule = rule;
+        this.bodyVariables = new int[bodyTerms.size()][];
+        this.bodyConstants = new int[bodyTerms.size()][];
+
+        for (int i = 0; i < bodyTerms.size(); i++) {
+            List<String> terms = bodyTerms.get(i);
+            bodyVariables[i] = new int[terms.size()];
+            bodyConstants[i] = new int[terms.size()];
+
+            for (int j = 0; j < terms.size(); j++) {
+                String term = terms.get(j);
+
+                if (!Rule.isVariable(term)) {
+                    bodyVariables[i][j] = -1;
+                    bodyConstants[i][j] = SymbolTable.intern(term);
+                } else if (term.equals("_")) {
+                    // Cada variable anonima es distinta de las demas
+                    bodyVariables[i][j] = variables.size();
+                    bodyConstants[i][j] = -1;
+                    variables.put("_ " + variables.size(), variables.size());
+                } else {
+                    bodyVariables[i][j] = variables.computeIfAbsent(term, name -> variables.size());
+                    bodyConstants[i][j] = -1;
+                }
+            }
+        }
+
+        List<String> headTerms = rule.getHeadTerms();
+        this.headVariables = new int[headTerms.size()];
+        this.headConstants = new int[headTerms.size()];
+
+        for (int j = 0; j < headTerms.size(); j++) {
+            String term = headTerms.get(j);
+
+            if (!Rule.isVariable(term)) {
+                headVariables[j] = -1;
+                headConstants[j] = SymbolTable.intern(term);
+            } else if (variables.containsKey(term) && !term.equals("_")) {
+                headVariables[j] = variables.get(term);
+                headConstants[j] = -1;
+            } else {
+                throw new IllegalArgumentException("Variable " + term + " of rule " + rule + " does not appear in its body");
+            }
+        }
+
+        this.variableCount = variables.size();
+    }
+
+    /**
+     * Combinacion de hechos que satisface el cuerpo de la regla: tupla de
+     * argumentos de la cabeza y hecho elegido para cada predicado del
+     * cuerpo, en el orden del cuerpo. Cada combinacion es una inferencia
+     * distinta, aunque otra infiera la misma tupla
+     */
+    record Match(int tuple, List<Fact> antecedents) {}
+
+    /**
+     * Busca todas las combinaciones de hechos que satisfacen el cuerpo de
+     * la regla
+     *
+     * @param relation Hechos de cada predicado, dado su identificador
+     * @return Combinaciones encontradas, en el orden en que se encontraron
+     */
+    List<Match> evaluate(IntFunction<List<Fact>> relation) {
+        int[] bodyIds = rule.getBodyIds();
+        boolean[] bound = new boolean[variableCount];
+        boolean[] joined = new boolean[bodyIds.length];
+        List<Binding> bindings = List.of(new Binding(new int[variableCount], new Fact[bodyIds.length]));
+
+        for (int step = 0; step < bodyIds.length && !bindings.isEmpty(); step++) {
+            int next = nextPredicate(relation, bound, joined);
+
+            bindings = join(next, relation.apply(bodyIds[next]), bindings, bound);
+            joined[next] = true;
+
+            for (int variable : bodyVariables[next]) {
+                if (variable >= 0) {
+                    bound[variable] = true;
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>(bindings.size());
+
+        for (Binding binding : bindings) {
+            matches.add(new Match(headTuple(binding), List.of(binding.facts())));
+        }
+
+        return matches;
+    }
+
+    // Elige el proximo predicado: el de mas argumentos ligados y, a igualdad, el de menos hechos
+    private int nextPredicate(IntFunction<List<Fact>> relation, boolean[] bound, boolean[] joined) {
+        int best = -1;
+        int bestBound = -1;
+        int bestSize = Integer.MAX_VALUE;
+
+        for (int i = 0; i < bodyVariables.length; i++) {
+            if (joined[i]) {
+                continue;
+            }
+
+            int boundPositions = keyPositions(i, bound).length;
+            int size = relation.apply(rule.getBodyIds()[i]).size();
+
+            if (boundPositions > bestBound || (boundPositions == bestBound && size < bestSize)) {
+                best = i;
+                bestBound = boundPositions;
+                bestSize = size;
+            }
+        }
+
+        return best;
+    }
+
+    // Posiciones de los argumentos de un predicado cuyo valor se conoce antes del join
+    private int[] keyPositions(int predicate, boolean[] bound) {
+        int[] variables = bodyVariables[predicate];
+
+        return IntStream.range(0, variables.length)
+                .filter(j -> variables[j] < 0 || bound[variables[j]])
+                .toArray();
+    }
+
+    /**
+     * Combina las combinaciones parciales con los hechos de un predicado,
+     * a traves de un indice por los argumentos ligados del predicado
+     */
+    private List<Binding> join(int predicate, List<Fact> facts, List<Binding> bindings, boolean[] bound) {
+        int[] variables = bodyVariables[predicate];
+        int[] constants = bodyConstants[predicate];
+        int[] positions = keyPositions(predicate, bound);
+        Map<Key, List<Fact>> index = new HashMap<>();
+
+        for (Fact fact : facts) {
+            int[] terms = fact.getArgumentIds();
+
+            if (terms.length == variables.length) {
+                int[] key = new int[positions.length];
+
+                for (int k = 0; k < positions.length; k++) {
+                    key[k] = terms[positions[k]];
+                }
+                index.computeIfAbsent(new Key(key), k -> new ArrayList<>()).add(fact);
+            }
+        }
+
+        List<Binding> joinedBindings = new ArrayList<>();
+
+        for (Binding binding : bindings) {
+            int[] key = new int[positions.length];
+
+            for (int k = 0; k < positions.length; k++) {
+                int position = positions[k];
+                key[k] = variables[position] < 0 ? constants[position] : binding.values()[variables[position]];
+            }
+
+            for (Fact fact : index.getOrDefault(new Key(key), List.of())) {
+                Binding extended = binding.extend(predicate, fact, variables, bound);
+
+                if (extended != null) {
+                    joinedBindings.add(extended);
+                }
+            }
+        }
+
+        return joinedBindings;
+    }
+
+    // Arma la tupla de argumentos de la cabeza para una combinacion de hechos
+    private int headTuple(Binding binding) {
+        int[] terms = new int[headVariables.length];
+
+        for (int j = 0; j < terms.length; j++) {
+            terms[j] = headVariables[j] < 0 ? headConstants[j] : binding.values()[headVariables[j]];
+        }
+
+        return SymbolTable.tuple(terms);
+    }
+
+    /**
+     * Combinacion parcial de hechos: valor de cada variable y hecho
+     * elegido para cada predicado del cuerpo
+     */
+    private record Binding(int[] values, Fact[] facts) {
+
+        // Agrega un hecho a la combinacion, o devuelve null si una variable repetida no coincide
+        Binding extend(int predicate, Fact fact, int[] variables, boolean[] bound) {
+            int[] newValues = values.clone();
+            Fact[] newFacts = facts.clone();
+            boolean[] assigned = new boolean[values.length];
+            int[] terms = fact.getArgumentIds();
+
+            for (int j = 0; j < variables.length; j++) {
+                int variable = variables[j];
+
+                if (variable < 0 || bound[variable]) {
+                    continue; // Ya se comprobo con el indice
+                }
+
+                if (assigned[variable] && newValues[variable] != terms[j]) {
+                    return null;
+                }
+                newValues[variable] = terms[j];
+                assigned[variable] = true;
+            }
+
+            newFacts[predicate] = fact;
+            return new Binding(newValues, newFacts);
+        }
+    }
+
+    // Clave del indice: valores de los argumentos ligados
+    private record Key(int[] values) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && Arrays.equals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+    }
+}
@@ -1,101 +1,1366 @@
 package InferenceEngine;
 
 import KnowledgePieces.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import net.objecthunter.exp4j.Expression;
-import net.objecthunter.exp4j.ExpressionBuilder;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 public class InferenceEngine {
     
+    // Cantidad de pares en conflicto a partir de la cual los ataques se calculan en paralelo
+    private static final int PARALLEL_CONFLICT_THRESHOLD = 4096;
+    // Grupo unico de hechos cuando los argumentos no pueden inferirse por separado
+    private static final int ALL_ARGUMENTS = -1;
+    private static final BitSet EMPTY = new BitSet();
+    
     private final Map<KnowledgePiece, List<Fact>> edges;
     private final List<Fact> facts;
     private final List<Rule> rules;
-    private final String[][] functions;
+    private final CompiledFunctions functions;
+    // Clase generada para cada regla, por posicion, o null si la regla no se compilo con las funciones
+    private final CompiledRule[] compiledRules;
+    // Hechos de un predicado y argumento, para las clases generadas
+    private final CompiledRule.FactIndex bodyFacts;
     private final List<KnowledgePiece> removableEdges;
     private final List<Pair> conflictiveNodes;
+    // Indice de hechos por nombre y argumento (atomo), en el mismo orden que la lista de hechos
+    private final Map<Integer, List<Fact>> factIndex;
+    // Indice de reglas (posiciones en la lista de reglas) por cada predicado de su cuerpo
+    private final Map<Integer, BitSet> ruleIndex;
+    // Posicion de cada argumento de un unico termino, en el orden en que se registraron
+    private final Map<Integer, Integer> argumentIndex;
+    // Argumento de cada posicion
+    private final List<Integer> indexedArguments;
+    // Reglas que deben volver a revisarse para cada argumento, por posicion
+    private final List<BitSet> pendingRules;
+    // Posiciones de los argumentos con al menos un hecho de cada predicado
+    private final Map<Integer, BitSet> predicateArguments;
+    // Posiciones de los argumentos con mas de un hecho de cada predicado
+    private final Map<Integer, BitSet> repeatedArguments;
+    // Argumentos cuyos hechos cambiaron durante una pasada
+    private final BitSet changedArguments;
+    // Reglas con varias variables (posiciones en la lista de reglas), que se evaluan con joins
+    private final BitSet joinRules;
+    // Indice de las reglas con varias variables por cada predicado de su cuerpo
+    private final Map<Integer, BitSet> joinIndex;
+    // Reglas con varias variables que deben volver a evaluarse
+    private final BitSet pendingJoins;
+    // Plan de evaluacion de cada regla con varias variables
+    private final Map<Integer, HashJoin> joins;
+    // Indice de hechos por predicado, para los joins
+    private final Map<Integer, List<Fact>> predicateIndex;
+    // Combinaciones de hechos ya usadas por las reglas con varias variables
+    private final Set<JoinDerivation> joinDerivations;
+    // Combinacion con la que se infirio cada hecho inferido por una regla con varias variables
+    private final Map<Fact, JoinDerivation> joinTargets;
+    // Instancias de cada hecho (nombre y argumento) presentes en el grafo
+    private final Map<Integer, Set<Fact>> graphNodes;
+    // Nodos origen de las aristas que llegan a cada hecho
+    private final Map<Fact, List<KnowledgePiece>> predecessors;
+    // Cantidad de aristas desde cada regla hacia cada hecho (nombre y argumento)
+    private final Map<Derivation, Integer> derivations;
+    // Hechos iniciales de cada argumento, cuando el grafo se genera por argumentos
+    private final Map<Integer, List<Fact>> argumentFacts;
+    // Motor que infirio el grafo de cada argumento
+    private final Map<Integer, InferenceEngine> argumentEngines;
+    // Aristas de cada regla, con un segmento por grupo de hechos, cuando el grafo se genera por grupos
+    private final Map<KnowledgePiece, SegmentedList<Fact>> ruleTargets;
+    // Conflictos del grafo generado por grupos, con un segmento por grupo
+    private final SegmentedList<Pair> argumentConflicts;
+    // Constante que representa el grupo de cada constante unida a otras por un hecho con varios argumentos
+    private final Map<Integer, Integer> components;
+    // Hechos recibidos al crear el motor, antes de inferir
+    private final List<Fact> initialFacts;
+    // Cantidad de hilos para inferir por argumentos, cero si el grafo se genero de forma secuencial
+    private int parallelism;
+    // Indica si los hechos iniciales ya se separaron en grupos
+    private boolean grouped;
+    // Indica si cada argumento se infiere por separado, segun group
+    private boolean separateArguments;
+    // Indica si ninguna agregacion puede rehacer antecedentes, segun keepsAntecedents
+    private boolean keepsAntecedents;
+    // Reglas y predicados de los que depende cada predicado consultado, con su contrario
+    private final Map<Integer, Relevance> relevance;
+    // Indica si los argumentos con los mismos hechos iniciales comparten el grafo inferido
+    private boolean shareTemplates;
+    // Operaciones que calcularon los atributos, solo si el grafo se genera para un barrido
+    private OperationTrace trace;
+    // Umbral de cada atributo para materializar un hecho inferido, o null si no se poda
+    private double[] thresholds;
+    // Cantidad maxima de hechos inferidos por predicado, o cero si no hay limite
+    private int topK;
+    // Inferencias quitadas por el limite por predicado, que no deben repetirse
+    private final Set<Derivation> prunedDerivations;
+    // Inferencias descartadas por los umbrales, que se cuentan una unica vez
+    private final Set<Derivation> thresholdDerivations;
+    // Trabajo evitado por la poda
+    private int belowThreshold;
+    private int beyondTopK;
+    private int savedEdges;
     
     public InferenceEngine(List<Fact> facts, List<Rule> rules, String[][] functions) {
+        this(facts, rules, new CompiledFunctions(functions).compile(rules)); // Las funciones se compilan una unica vez
+    }
+    
+    /**
+     * Motor que reutiliza funciones ya compiladas, para un subconjunto de
+     * hechos o para aplicar el mismo programa a distintos lotes de hechos.
+     * Las reglas deben haberse especializado con CompiledFunctions.compile
+     * para revisar su cuerpo y evaluar su soporte con las clases generadas
+     * 
+     * @param facts Hechos iniciales
+     * @param rules Reglas del programa
+     * @param functions Funciones compiladas
+     */
+    public InferenceEngine(List<Fact> facts, List<Rule> rules, CompiledFunctions functions) {
         this.edges = new HashMap<>();
         this.facts = facts;
         this.rules = rules;
         this.functions = functions;
+        this.compiledRules = new CompiledRule[rules.size()];
+        this.bodyFacts = (predicate, argument) -> indexedFacts(SymbolTable.atom(predicate, argument));
         this.removableEdges = new ArrayList<>();
         this.conflictiveNodes = new ArrayList<>();
+        this.factIndex = new HashMap<>();
+        this.ruleIndex = new HashMap<>();
+        this.argumentIndex = new HashMap<>();
+        this.indexedArguments = new ArrayList<>();
+        this.pendingRules = new ArrayList<>();
+        this.changedArguments = new BitSet();
+        this.predicateArguments = new HashMap<>();
+        this.repeatedArguments = new HashMap<>();
+        this.joinRules = new BitSet();
+        this.joinIndex = new HashMap<>();
+        this.pendingJoins = new BitSet();
+        this.joins = new HashMap<>();
+        this.predicateIndex = new HashMap<>();
+        this.joinDerivations = new HashSet<>();
+        this.joinTargets = new HashMap<>();
+        
+        for (int r = 0; r < rules.size(); r++) {
+            compiledRules[r] = functions.rule(rules.get(r));
+            
+            if (!rules.get(r).isSingleVariable()) {
+                joinRules.set(r);
+                joins.put(r, new HashJoin(rules.get(r)));
+            }
+        }
+        this.graphNodes = new HashMap<>();
+        this.predecessors = new HashMap<>();
+        this.derivations = new HashMap<>();
+        this.argumentFacts = new LinkedHashMap<>();
+        this.argumentEngines = new HashMap<>();
+        this.ruleTargets = new HashMap<>();
+        this.argumentConflicts = new SegmentedList<>();
+        this.components = new HashMap<>();
+        this.initialFacts = List.copyOf(facts);
+        this.prunedDerivations = new HashSet<>();
+        this.thresholdDerivations = new HashSet<>();
+        this.relevance = new HashMap<>();
+    }
+    
+    // Inferencia de un hecho (atomo) realizada por una regla
+    private record Derivation(Rule rule, int atom) {}
+    
+    // Inferencia de una regla con varias variables, identificada por los hechos (por referencia) que la permitieron
+    private record JoinDerivation(Rule rule, List<Fact> antecedents) {}
+    
+    // Parte del programa que interviene en una consulta, y si basta con los hechos de su argumento
+    private record Relevance(Set<Integer> predicates, List<Rule> rules, boolean singleArgument) {}
+    
+    /**
+     * Clase que se encarga de la generacion de la estructura que
+     * representa las aristas de un grafo argumentativo
+     * 
+     * @return Estructura que representa las aristas del grafo en su atributo 
+     * "edges" y los nodos que se contradicen en su atributo "conflictiveNodes"
+     */
+    public ArgumentativeGraph buildTree() {
+        
+        deriveFacts(); // Se infieren los hechos hasta llegar a un punto fijo
+        
+        conflict(); // Se resuelven los conflictos entre hechos
+        
+        return new ArgumentativeGraph(edges, conflictiveNodes);
+    }
+    
+    /**
+     * Genera el grafo argumentativo procesando en paralelo los hechos de
+     * cada argumento. Como las reglas de una variable solo relacionan
+     * hechos con el mismo argumento, cada argumento se infiere y resuelve
+     * sus conflictos por separado, y luego se unen los resultados en un
+     * unico grafo. Con reglas de varias variables se separan los grupos de
+     * constantes unidas por algun hecho. Si los argumentos no son
+     * independientes se infieren todos juntos
+     * 
+     * @param parallelism Cantidad de hilos a utilizar, mayor que cero
+     * @return Estructura que representa las aristas del grafo en su atributo 
+     * "edges" y los nodos que se contradicen en su atributo "conflictiveNodes"
+     */
+    public ArgumentativeGraph buildTree(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        if (topK > 0) {
+            throw new IllegalStateException("Partitioned builds can't keep a per-predicate limit");
+        }
+        
+        this.parallelism = parallelism;
+        group();
+        
+        // Se unen los grafos de cada argumento en el orden original
+        facts.clear();
+        inferArguments(new ArrayList<>(argumentFacts.keySet()));
+        
+        return new ArgumentativeGraph(edges, argumentConflicts);
+    }
+    
+    /**
+     * Configura la poda de hechos inferidos, antes de generar el grafo. Un
+     * hecho inferido cuyo soporte queda debajo del umbral de alguno de sus
+     * atributos no se materializa: no se agrega al grafo ni permite
+     * inferir otros hechos. Ademas, al terminar cada estrato o cada pasada
+     * se conservan solo los topK hechos inferidos de mayor valor total de
+     * cada predicado inferido en ella. Los que ya fueron usados para
+     * inferir otros hechos no se quitan, por lo que un predicado puede
+     * terminar con mas de topK hechos. El limite compara hechos de todos
+     * los argumentos, por lo que solo puede usarse con buildTree(): la
+     * generacion por argumentos, las consultas y las actualizaciones
+     * fallan si hay limite
+     * 
+     * @param thresholds Umbral de cada atributo, o null para no usar umbrales
+     * @param topK Cantidad maxima de hechos inferidos por predicado, o cero
+     * para no limitarla
+     */
+    public void setPruning(double[] thresholds, int topK) {
+        this.thresholds = thresholds;
+        this.topK = topK;
+    }
+    
+    /**
+     * @return Trabajo evitado por la poda al generar el grafo
+     */
+    public PruningReport getPruningReport() {
+        // Se suma lo evitado por el motor de cada argumento
+        int threshold = belowThreshold, limit = beyondTopK, saved = savedEdges;
+        
+        for (InferenceEngine engine : argumentEngines.values()) {
+            threshold += engine.belowThreshold;
+            limit += engine.beyondTopK;
+            saved += engine.savedEdges;
+        }
+        
+        return new PruningReport(threshold, limit, saved);
+    }
+    
+    /**
+     * Evalua varias configuraciones de funciones sobre un mismo programa.
+     * El grafo se genera una unica vez, con la primera configuracion,
+     * registrando las operaciones que calculan cada atributo; luego esas
+     * operaciones se vuelven a evaluar con cada configuracion. Se trabaja
+     * sobre copias de los hechos, por lo que la lista recibida no cambia
+     * 
+     * @param facts Hechos iniciales
+     * @param rules Reglas del programa
+     * @param configurations Matrices de funciones a evaluar, con el mismo
+     * formato que las del constructor
+     * @return Grafo generado y valores de sus hechos para cada configuracion
+     */
+    public static SweepResult sweep(List<Fact> facts, List<Rule> rules, List<String[][]> configurations) {
+        List<Fact> copies = new ArrayList<>(facts.size());
+        
+        for (Fact fact : facts) {
+            copies.add(new Fact(fact.getNameId(), fact.getArgumentId(), fact.getAttributes()));
+        }
+        
+        InferenceEngine engine = new InferenceEngine(copies, rules, configurations.getFirst());
+        engine.trace = new OperationTrace(copies);
+        
+        return engine.trace.replay(engine.buildTree(), configurations);
+    }
+    
+    /**
+     * Genera el grafo argumentativo por argumentos, como buildTree(int),
+     * agrupando los argumentos cuyos hechos iniciales tienen los mismos
+     * nombres y valores en el mismo orden. Cada grupo se infiere una unica
+     * vez y el grafo se copia para los demas argumentos del grupo, por lo
+     * que el trabajo depende de la cantidad de perfiles distintos. Las
+     * actualizaciones incrementales siguen compartiendo plantillas
+     * 
+     * @param parallelism Cantidad de hilos a utilizar, mayor que cero
+     * @return Estructura que representa las aristas del grafo en su atributo 
+     * "edges" y los nodos que se contradicen en su atributo "conflictiveNodes"
+     */
+    public ArgumentativeGraph buildSharedTree(int parallelism) {
+        this.shareTemplates = true;
+        
+        return buildTree(parallelism);
+    }
+    
+    /**
+     * Añade hechos a un grafo ya generado. Solo se vuelven a inferir los
+     * grupos de los hechos añadidos, junto con sus agregaciones y
+     * conflictos; si un hecho une grupos, se infieren juntos
+     * 
+     * @param newFacts Hechos a añadir
+     * @return Grafo argumentativo actualizado
+     */
+    public ArgumentativeGraph assertFacts(List<Fact> newFacts) {
+        splitGraph();
+        keepsAntecedents = keepsAntecedents && keepsAntecedents(newFacts, rules);
+        
+        // Las reglas no cambian, por lo que los grupos solo dejan de ser independientes por los hechos
+        if (separateArguments && !keepsAntecedents) {
+            return regroup(newFacts);
+        }
+        
+        Set<Integer> arguments = new LinkedHashSet<>();
+        
+        for (Fact fact : newFacts) {
+            connect(fact, arguments);
+            argumentFacts.computeIfAbsent(partition(fact), argument -> new ArrayList<>()).add(fact);
+            arguments.add(partition(fact));
+        }
+        
+        return update(arguments);
+    }
+    
+    /**
+     * Quita hechos de un grafo ya generado. Se eliminan todos los hechos
+     * iniciales con el mismo nombre y argumento de cada hecho dado, y solo
+     * se vuelven a inferir los grupos afectados
+     * 
+     * @param oldFacts Hechos a quitar
+     * @return Grafo argumentativo actualizado
+     */
+    public ArgumentativeGraph retractFacts(List<Fact> oldFacts) {
+        splitGraph();
+        Set<Integer> arguments = new LinkedHashSet<>();
+        
+        for (Fact fact : oldFacts) {
+            List<Fact> baseFacts = argumentFacts.get(partition(fact));
+            
+            if (baseFacts != null && baseFacts.removeIf(base -> base.getAtomId() == fact.getAtomId())) {
+                arguments.add(partition(fact));
+            }
+        }
+        
+        return update(arguments);
+    }
+    
+    /**
+     * Consulta dirigida por un objetivo: infiere solo lo necesario para
+     * obtener los valores de un hecho. Se recorren hacia atras las
+     * dependencias entre predicados desde el objetivo y su contrario, y se
+     * infiere un grafo solo con esas reglas y con los hechos iniciales de
+     * esos predicados. Si los argumentos son independientes tambien se
+     * descartan los hechos de otros argumentos. Si una agregacion puede
+     * rehacer hechos ya usados, el resultado depende de todas las reglas
+     * que los usan y se infiere el programa completo
+     * 
+     * Las dependencias de cada predicado se calculan una unica vez y solo
+     * se recorren los hechos iniciales del grupo del objetivo. El resultado
+     * es independiente del grafo completo: los hechos iniciales se copian,
+     * por lo que sus valores debilitados no cambian
+     * 
+     * @param predicate Predicado del objetivo, puede estar negado
+     * @param argument Argumento del objetivo, o argumentos separados por comas
+     * @return Hechos del objetivo y de su contrario con sus valores, sin
+     * hechos si no se cumplen, y el subgrafo que los soporta
+     */
+    public QueryResult query(String predicate, String argument) {
+        if (topK > 0) {
+            throw new IllegalStateException("Queries can't keep a per-predicate limit");
+        }
+        
+        Fact goal = new Fact(predicate, argument, null);
+        int positive = SymbolTable.positive(goal.getNameId());
+        int contrary = positive != goal.getNameId() ? positive : SymbolTable.intern("~" + goal.getName());
+        int goalAtom = goal.getAtomId();
+        int contraryAtom = SymbolTable.atom(contrary, goal.getArgumentId());
+        
+        // Solo intervienen los hechos iniciales del grupo del objetivo
+        group();
+        List<Fact> baseFacts = argumentFacts.getOrDefault(partition(goal), List.of());
+        Relevance relevant = relevance.computeIfAbsent(positive, name -> relevance(goal.getNameId(), contrary));
+        List<Fact> relevantFacts = new ArrayList<>();
+        
+        for (Fact fact : baseFacts) {
+            if (!keepsAntecedents || relevant.predicates().contains(fact.getNameId()) 
+                    && (!relevant.singleArgument() || fact.getArgumentId() == goal.getArgumentId())) {
+                relevantFacts.add(new Fact(fact.getNameId(), fact.getArgumentId(), fact.getAttributes()));
+            }
+        }
+        
+        InferenceEngine engine = new InferenceEngine(relevantFacts, keepsAntecedents ? relevant.rules() : rules, functions);
+        engine.setPruning(thresholds, 0);
+        engine.buildTree();
+        
+        return new QueryResult(engine.supportGraph(goalAtom, contraryAtom), 
+                List.copyOf(engine.indexedFacts(goalAtom)), List.copyOf(engine.indexedFacts(contraryAtom)));
+    }
+    
+    /**
+     * Recorre hacia atras las dependencias entre predicados desde el
+     * objetivo y su contrario. Solo depende de las reglas, por lo que se
+     * calcula una unica vez por predicado consultado
+     */
+    private Relevance relevance(int goal, int contrary) {
+        Stratification stratification = new Stratification(rules);
+        Set<Integer> relevant = new HashSet<>();
+        Deque<Integer> pendingPredicates = new ArrayDeque<>(List.of(goal, contrary));
+        
+        while (!pendingPredicates.isEmpty()) {
+            int name = pendingPredicates.pop();
+            
+            if (relevant.add(name)) {
+                pendingPredicates.addAll(stratification.getDependencies(name));
+            }
+        }
+        
+        List<Rule> relevantRules = new ArrayList<>();
+        
+        for (Rule rule : rules) {
+            if (relevant.contains(rule.getHeadId())) {
+                relevantRules.add(rule);
+            }
+        }
+        
+        // Si las reglas son de una variable solo intervienen los hechos del argumento del objetivo
+        return new Relevance(relevant, relevantRules, relevantRules.stream().allMatch(Rule::isSingleVariable));
+    }
+    
+    /**
+     * Extrae del grafo los nodos de los que dependen los hechos dados,
+     * recorriendo las aristas hacia atras, y los conflictos de esos hechos
+     */
+    private ArgumentativeGraph supportGraph(int goalAtom, int contraryAtom) {
+        Set<Fact> goals = new LinkedHashSet<>();
+        
+        for (int atom : new int[] {goalAtom, contraryAtom}) {
+            goals.addAll(indexedFacts(atom));
+            goals.addAll(graphNodes.getOrDefault(atom, Set.of()));
+        }
+        
+        Set<KnowledgePiece> ancestors = new HashSet<>(goals);
+        Deque<Fact> pendingNodes = new ArrayDeque<>(goals);
+        
+        while (!pendingNodes.isEmpty()) {
+            for (KnowledgePiece source : predecessors.getOrDefault(pendingNodes.pop(), List.of())) {
+                if (ancestors.add(source) && source instanceof Fact fact) {
+                    pendingNodes.push(fact);
+                }
+            }
+        }
+        
+        Map<KnowledgePiece, List<Fact>> subgraph = new HashMap<>();
+        
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : edges.entrySet()) {
+            if (ancestors.contains(entry.getKey())) {
+                List<Fact> targets = new ArrayList<>(entry.getValue());
+                targets.removeIf(target -> !ancestors.contains(target));
+                
+                if (!targets.isEmpty()) {
+                    subgraph.put(entry.getKey(), targets);
+                }
+            }
+        }
+        
+        List<Pair> conflicts = new ArrayList<>();
+        
+        for (Pair pair : conflictiveNodes) {
+            if (goals.contains(pair.first()) || goals.contains(pair.second())) {
+                conflicts.add(pair);
+            }
+        }
+        
+        return new ArgumentativeGraph(subgraph, conflicts);
+    }
+    
+    /**
+     * Agrupa los hechos iniciales en los grupos que se infieren por
+     * separado, manteniendo su orden. Cada grupo da el mismo grafo
+     * inferido por separado si las reglas con varias variables relacionan
+     * solo constantes unidas por sus hechos, y las reglas que pierden sus
+     * aristas al rehacer una agregacion las pierden en todos los argumentos.
+     * Se agrupan una unica vez: luego los grupos se mantienen al añadir o
+     * quitar hechos
+     */
+    private void group() {
+        if (grouped) {
+            return;
+        }
+        
+        Set<Integer> arguments = new HashSet<>();
+        grouped = true;
+        keepsAntecedents = keepsAntecedents(initialFacts, rules);
+        separateArguments = keepsAntecedents && rules.stream().allMatch(InferenceEngine::connected);
+        
+        // Primero se unen las constantes, para que cada hecho vaya al grupo final
+        for (Fact fact : initialFacts) {
+            connect(fact, arguments);
+        }
+        
+        for (Fact fact : initialFacts) {
+            argumentFacts.computeIfAbsent(partition(fact), argument -> new ArrayList<>()).add(fact);
+        }
+    }
+    
+    /**
+     * Prepara para actualizarlo un grafo generado con buildTree(): separa
+     * una unica vez sus hechos, aristas y conflictos en los grupos que se
+     * infieren por separado, como si se hubiera generado con buildTree(int)
+     * con un hilo. El limite por predicado compara todos los grupos, por lo
+     * que no puede mantenerse al actualizar
+     */
+    private void splitGraph() {
+        if (parallelism > 0) {
+            return;
+        }
+        if (topK > 0) {
+            throw new IllegalStateException("Incremental updates can't keep a per-predicate limit");
+        }
+        
+        parallelism = 1;
+        group();
+        
+        Map<Integer, InferenceEngine> engines = new LinkedHashMap<>();
+        Function<Integer, InferenceEngine> engine = argument -> engines.computeIfAbsent(argument, 
+                key -> new InferenceEngine(new ArrayList<>(), rules, functions));
+        
+        for (int argument : argumentFacts.keySet()) {
+            engine.apply(argument);
+        }
+        
+        for (Fact fact : facts) {
+            engine.apply(partition(fact)).facts.add(fact);
+        }
+        
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : edges.entrySet()) {
+            if (entry.getKey() instanceof Fact fact) {
+                engine.apply(partition(fact)).edges.put(fact, entry.getValue());
+            } else {
+                for (Fact target : entry.getValue()) {
+                    engine.apply(partition(target)).edges.computeIfAbsent(entry.getKey(), rule -> new ArrayList<>()).add(target);
+                }
+            }
+        }
+        
+        for (Pair pair : conflictiveNodes) {
+            engine.apply(partition(pair.first())).conflictiveNodes.add(pair);
+        }
+        
+        facts.clear();
+        edges.clear();
+        conflictiveNodes.clear();
+        
+        for (Map.Entry<Integer, InferenceEngine> entry : engines.entrySet()) {
+            argumentEngines.put(entry.getKey(), entry.getValue());
+            merge(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * Obtiene el grupo de hechos que se infiere por separado al que
+     * pertenece un hecho: su argumento, el grupo de sus constantes si hay
+     * reglas con varias variables, o un unico grupo con todos los hechos si
+     * los argumentos no son independientes
+     */
+    private int partition(Fact fact) {
+        if (!separateArguments) {
+            return ALL_ARGUMENTS;
+        }
+        return joinRules.isEmpty() || fact.getArity() == 0 ? fact.getArgumentId() : component(fact.getArgumentIds()[0]);
+    }
+    
+    // Constante que representa el grupo de una constante, acortando el camino recorrido
+    private int component(int constant) {
+        int root = constant;
+        
+        for (Integer parent = components.get(root); parent != null; parent = components.get(root)) {
+            root = parent;
+        }
+        
+        for (int node = constant; node != root; ) {
+            node = components.put(node, root);
+        }
+        return root;
+    }
+    
+    /**
+     * Une en un grupo las constantes de un hecho con varios argumentos. Los
+     * hechos iniciales de los grupos unidos pasan al grupo de la primera
+     * constante y su grafo se quita, para volver a inferirlos juntos
+     * 
+     * @param arguments Grupos a volver a inferir, se quitan los unidos
+     */
+    private void connect(Fact fact, Set<Integer> arguments) {
+        if (!separateArguments || joinRules.isEmpty() || fact.getArity() < 2) {
+            return;
+        }
+        
+        int group = component(fact.getArgumentIds()[0]);
+        
+        for (int term : fact.getArgumentIds()) {
+            int other = component(term);
+            
+            if (other != group) {
+                components.put(other, group);
+                List<Fact> otherFacts = argumentFacts.remove(other);
+                InferenceEngine engine = argumentEngines.remove(other);
+                
+                if (otherFacts != null) {
+                    argumentFacts.computeIfAbsent(group, argument -> new ArrayList<>()).addAll(otherFacts);
+                }
+                if (engine != null) {
+                    unmerge(engine, other);
+                }
+                if (arguments.remove(other)) {
+                    arguments.add(group);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Indica si una regla solo combina hechos de un mismo grupo de
+     * constantes: no tiene constantes, las variables de la cabeza aparecen
+     * en el cuerpo y los predicados del cuerpo se unen por variables
+     * compartidas
+     */
+    private static boolean connected(Rule rule) {
+        if (rule.isSingleVariable()) {
+            return true;
+        }
+        
+        List<List<String>> pendingAtoms = new ArrayList<>(rule.getBodyTerms());
+        Set<String> variables = new HashSet<>(pendingAtoms.remove(0));
+        
+        // Se agregan los predicados que comparten alguna variable con los ya unidos
+        for (int i = 0; i < pendingAtoms.size(); i++) {
+            if (!Collections.disjoint(pendingAtoms.get(i), variables)) {
+                variables.addAll(pendingAtoms.remove(i));
+                i = -1;
+            }
+        }
+        
+        return pendingAtoms.isEmpty() && variables.containsAll(rule.getHeadTerms()) 
+                && variables.stream().allMatch(Rule::isVariable);
+    }
+    
+    /**
+     * Indica si ninguna agregacion puede rehacer hechos ya usados como
+     * antecedentes. Al rehacer una agregacion se quitan los nodos
+     * superiores y todas las aristas de las reglas que los infirieron, por
+     * lo que el resultado depende de todas las reglas que usan el hecho.
+     * Eso solo ocurre si un predicado del cuerpo de alguna regla puede
+     * agregarse, por ser la cabeza de varias reglas, de una regla con
+     * varias variables o de hechos iniciales
+     */
+    private static boolean keepsAntecedents(List<Fact> facts, List<Rule> rules) {
+        Set<Integer> antecedents = new HashSet<>();
+        Map<Integer, Integer> heads = new HashMap<>();
+        
+        for (Rule rule : rules) {
+            for (int bodypart : rule.getBodyIds()) {
+                antecedents.add(bodypart);
+            }
+            // Una regla con varias variables puede inferir varias veces el mismo hecho
+            heads.merge(rule.getHeadId(), rule.isSingleVariable() ? 1 : 2, Integer::sum);
+        }
+        
+        for (Map.Entry<Integer, Integer> head : heads.entrySet()) {
+            if (head.getValue() > 1 && antecedents.contains(head.getKey())) {
+                return false;
+            }
+        }
+        
+        for (Fact fact : facts) {
+            if (heads.containsKey(fact.getNameId()) && antecedents.contains(fact.getNameId())) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Vuelve a inferir todos los hechos en un unico grupo, cuando los hechos
+     * añadidos hacen que los argumentos dejen de ser independientes. Los
+     * grupos conservan el orden de aparicion de los argumentos y el de los
+     * hechos de cada uno
+     */
+    private ArgumentativeGraph regroup(List<Fact> newFacts) {
+        List<Fact> baseFacts = new ArrayList<>();
+        
+        for (List<Fact> group : argumentFacts.values()) {
+            baseFacts.addAll(group);
+        }
+        baseFacts.addAll(newFacts);
+        
+        argumentFacts.clear();
+        argumentEngines.clear();
+        facts.clear();
+        edges.clear();
+        ruleTargets.clear();
+        argumentConflicts.clear();
+        components.clear();
+        separateArguments = false;
+        argumentFacts.put(ALL_ARGUMENTS, baseFacts);
+        inferArguments(List.of(ALL_ARGUMENTS));
+        
+        return new ArgumentativeGraph(edges, argumentConflicts);
+    }
+    
+    // Reemplaza en el grafo el resultado de los grupos modificados
+    private ArgumentativeGraph update(Set<Integer> arguments) {
+        
+        // Se quitan los segmentos de aristas y conflictos anteriores de esos grupos
+        for (int argument : arguments) {
+            InferenceEngine engine = argumentEngines.remove(argument);
+            
+            if (engine != null) {
+                unmerge(engine, argument);
+            }
+            
+            if (argumentFacts.get(argument).isEmpty()) {
+                argumentFacts.remove(argument);
+            }
+        }
+        
+        // Se vuelven a inferir solo los argumentos que aun tienen hechos
+        List<Integer> remaining = new ArrayList<>(arguments);
+        remaining.retainAll(argumentFacts.keySet());
+        inferArguments(remaining);
+        
+        return new ArgumentativeGraph(edges, argumentConflicts);
+    }
+    
+    /**
+     * Infiere el grafo de cada argumento dado y une los resultados al grafo
+     * en el orden recibido. Si se comparten plantillas, los argumentos con
+     * los mismos hechos iniciales se infieren una unica vez y el resto
+     * copia el grafo de su plantilla
+     */
+    private void inferArguments(List<Integer> arguments) {
+        List<Integer> inferred = arguments;
+        Map<Integer, Integer> templates = new HashMap<>();
+        
+        // Las plantillas se copian cambiando un unico argumento
+        if (shareTemplates && separateArguments && joinRules.isEmpty()) {
+            Map<Profile, Integer> profiles = new HashMap<>();
+            inferred = new ArrayList<>();
+            
+            for (int argument : arguments) {
+                int template = profiles.computeIfAbsent(Profile.of(argumentFacts.get(argument)), profile -> argument);
+                
+                if (template == argument) {
+                    inferred.add(argument);
+                } else {
+                    templates.put(argument, template);
+                }
+            }
+        }
+        
+        Map<Integer, InferenceEngine> engines = inferEngines(inferred);
+        
+        for (int argument : arguments) {
+            InferenceEngine engine = templates.containsKey(argument)
+                    ? instantiate(engines.get(templates.get(argument)), templates.get(argument), argument)
+                    : engines.get(argument);
+            
+            argumentEngines.put(argument, engine);
+            merge(argument, engine);
+        }
+    }
+    
+    /**
+     * Infiere en paralelo el grafo de cada argumento dado, repartiendo los
+     * argumentos en lotes con su propia copia de las funciones
+     * 
+     * @return Motor que infirio cada argumento, en el orden recibido
+     */
+    private Map<Integer, InferenceEngine> inferEngines(List<Integer> arguments) {
+        Map<Integer, InferenceEngine> engines = new LinkedHashMap<>();
+        int batches = Math.min(arguments.size(), parallelism * 4);
+        List<Callable<List<InferenceEngine>>> tasks = new ArrayList<>();
+        
+        for (int b = 0; b < batches; b++) {
+            List<Integer> batch = arguments.subList(
+                    b * arguments.size() / batches, (b + 1) * arguments.size() / batches);
+            
+            tasks.add(() -> {
+                CompiledFunctions batchFunctions = functions.copy();
+                List<InferenceEngine> batchEngines = new ArrayList<>();
+                
+                for (int argument : batch) {
+                    // Los hechos iniciales vuelven a su valor sin debilitar
+                    for (Fact fact : argumentFacts.get(argument)) {
+                        fact.setDeltaAttributes(fact.getAttributes());
+                    }
+                    
+                    InferenceEngine engine = new InferenceEngine(new ArrayList<>(argumentFacts.get(argument)), rules, batchFunctions);
+                    engine.setPruning(thresholds, 0);
+                    engine.buildTree();
+                    batchEngines.add(engine);
+                }
+                return batchEngines;
+            });
+        }
+        
+        try (ForkJoinPool pool = new ForkJoinPool(parallelism)) {
+            int a = 0;
+            
+            for (Future<List<InferenceEngine>> result : pool.invokeAll(tasks)) {
+                for (InferenceEngine engine : result.get()) {
+                    engines.put(arguments.get(a++), engine);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Inference interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Inference failed", e.getCause());
+        }
+        
+        return engines;
+    }
+    
+    /**
+     * Copia el grafo inferido para un argumento a otro argumento con los
+     * mismos hechos iniciales. Los hechos iniciales de la plantilla se
+     * reemplazan por los del argumento, en el mismo orden, y los hechos
+     * inferidos se crean de nuevo con sus valores; las reglas se comparten
+     * 
+     * @return Motor con los hechos, aristas y conflictos del argumento
+     */
+    private InferenceEngine instantiate(InferenceEngine template, int templateArgument, int argument) {
+        InferenceEngine engine = new InferenceEngine(new ArrayList<>(), rules, functions);
+        Map<Fact, Fact> copies = new HashMap<>();
+        
+        // La poda de la plantilla tambien se evito para el argumento
+        engine.belowThreshold = template.belowThreshold;
+        engine.beyondTopK = template.beyondTopK;
+        engine.savedEdges = template.savedEdges;
+        List<Fact> templateFacts = argumentFacts.get(templateArgument);
+        List<Fact> baseFacts = argumentFacts.get(argument);
+        
+        for (int i = 0; i < baseFacts.size(); i++) {
+            baseFacts.get(i).setDeltaAttributes(templateFacts.get(i).getDeltaAttributes());
+            copies.put(templateFacts.get(i), baseFacts.get(i));
+        }
+        
+        Function<Fact, Fact> copy = fact -> copies.computeIfAbsent(fact, original -> {
+            Fact newFact = new Fact(original.getNameId(), argument, original.getAttributes());
+            newFact.setDeltaAttributes(original.getDeltaAttributes());
+            return newFact;
+        });
+        
+        for (Fact fact : template.facts) {
+            engine.facts.add(copy.apply(fact));
+        }
+        
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : template.edges.entrySet()) {
+            KnowledgePiece source = entry.getKey() instanceof Fact fact ? copy.apply(fact) : entry.getKey();
+            engine.edges.put(source, new ArrayList<>(entry.getValue().stream().map(copy).toList()));
+        }
+        
+        for (Pair pair : template.conflictiveNodes) {
+            engine.conflictiveNodes.add(new Pair(copy.apply(pair.first()), copy.apply(pair.second())));
+        }
+        
+        return engine;
+    }
+    
+    /**
+     * Firma de los hechos iniciales de un argumento: nombre y valores de
+     * cada hecho, en orden. Dos argumentos con la misma firma generan el
+     * mismo grafo, salvo por el argumento
+     */
+    private record Profile(int[] names, double[] values) {
+        
+        static Profile of(List<Fact> facts) {
+            int[] names = new int[2 * facts.size()];
+            double[] values = facts.stream().flatMapToDouble(fact -> Arrays.stream(fact.getAttributes())).toArray();
+            
+            for (int i = 0; i < facts.size(); i++) {
+                names[2 * i] = facts.get(i).getNameId();
+                names[2 * i + 1] = facts.get(i).getAttributes().length;
+            }
+            
+            return new Profile(names, values);
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Profile profile 
+                    && Arrays.equals(names, profile.names) && Arrays.equals(values, profile.values);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(names) + Arrays.hashCode(values);
+        }
+    }
+    
+    /**
+     * Incorpora al grafo las aristas y conflictos de un grupo, sin
+     * copiarlos: las listas del motor del grupo son segmentos del grafo
+     */
+    private void merge(int argument, InferenceEngine engine) {
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : engine.edges.entrySet()) {
+            if (entry.getKey() instanceof Rule) {
+                SegmentedList<Fact> targets = ruleTargets.computeIfAbsent(entry.getKey(), rule -> new SegmentedList<>());
+                targets.putSegment(argument, entry.getValue());
+                edges.put(entry.getKey(), targets);
+            } else {
+                edges.put(entry.getKey(), entry.getValue());
+            }
+        }
+        
+        argumentConflicts.putSegment(argument, engine.conflictiveNodes);
+    }
+    
+    // Quita del grafo los segmentos que aporto el motor de un grupo
+    private void unmerge(InferenceEngine engine, int argument) {
+        for (KnowledgePiece source : engine.edges.keySet()) {
+            if (source instanceof Rule) {
+                // Las reglas son compartidas, solo se quita el segmento de este grupo
+                SegmentedList<Fact> targets = ruleTargets.get(source);
+                targets.removeSegment(argument);
+                
+                if (targets.isEmpty()) {
+                    edges.remove(source);
+                    ruleTargets.remove(source);
+                }
+            } else {
+                edges.remove(source);
+            }
+        }
+        
+        argumentConflicts.removeSegment(argument);
+    }
+    
+    /**
+     * Infiere nuevos hechos hasta que no se modifique el grafo. Cada pasada
+     * recorre los argumentos y las reglas en el orden original, revisando
+     * solo las reglas pendientes; si el programa no puede tener
+     * agregaciones las reglas se evaluan por estratos, que da el mismo grafo
+     */
+    private void deriveFacts() {
+        
+        List<Fact> potentialFacts = new ArrayList<>();
+        Set<Integer> arguments = new LinkedHashSet<>();
+        
+        // Se obtienen todos los argumentos diferentes de los hechos de un unico argumento
+        for (Fact fact : facts) {
+            if (fact.getArity() == 1) {
+                arguments.add(fact.getArgumentId());
+            }
+        }
+        
+        buildIndexes(arguments);
+        
+        if (withoutAggregation(facts, rules)) {
+            deriveByStrata(potentialFacts);
+        } else {
+            deriveBySweeps(potentialFacts);
+        }
+    }
+    
+    /**
+     * Repite pasadas sobre todas las reglas, como el motor original: el
+     * resultado de las agregaciones depende del orden en que se infieren
+     * los hechos, por lo que solo se omiten las reglas cuyos antecedentes
+     * no cambiaron y los argumentos en los que ninguna regla puede aplicarse
+     */
+    private void deriveBySweeps(List<Fact> potentialFacts) {
+        BitSet allRules = new BitSet(rules.size());
+        allRules.set(0, rules.size());
+        boolean anyNewFact;
+        
+        do {
+            // Las reglas con varias variables se evaluan sobre todos los hechos a la vez
+            anyNewFact = applyJoinRules(allRules);
+            
+            BitSet candidates = candidateArguments(allRules, false);
+            changedArguments.clear();
+            
+            for (int a = candidates.nextSetBit(0); a >= 0; a = nextArgument(candidates, a + 1)) { // Ciclo de argumentos
+                BitSet pending = pendingRules.get(a);
+                
+                // Solo se revisan las reglas afectadas por hechos nuevos o eliminados
+                for (int r = pending.nextSetBit(0); r >= 0; r = pending.nextSetBit(r + 1)) { // Ciclo de reglas
+                    pending.clear(r);
+                    
+                    if (mayApply(rules.get(r), a)) {
+                        anyNewFact |= applyRule(r, indexedArguments.get(a), potentialFacts);
+                    }
+                }
+            }
+            
+            if (topK > 0) {
+                pruneTopK(allRules);
+            }
+        } while (anyNewFact);
+    }
+    
+    // Siguiente argumento candidato, incluidos los que cambiaron durante la pasada
+    private int nextArgument(BitSet candidates, int from) {
+        int next = candidates.nextSetBit(from);
+        int changed = changedArguments.nextSetBit(from);
+        
+        return next < 0 || (changed >= 0 && changed < next) ? changed : next;
+    }
+    
+    /**
+     * Evalua las reglas por estratos, siguiendo el orden de dependencias
+     * entre predicados, de modo que cada estrato se revisa cuando los
+     * predicados de los que depende ya estan completos. Solo los estratos
+     * recursivos se repiten hasta un punto fijo propio
+     */
+    private void deriveByStrata(List<Fact> potentialFacts) {
+        Stratification stratification = new Stratification(rules);
+        List<BitSet> strata = stratification.getStrata();
+        
+        for (int s = 0; s < strata.size(); s++) { // Ciclo de estratos
+            BitSet stratum = strata.get(s);
+            boolean stratumChanged;
+            
+            do {
+                stratumChanged = false;
+                
+                // Solo se recorren los argumentos en los que alguna regla del estrato puede aplicarse
+                BitSet candidates = candidateArguments(stratum, stratification.isRecursive(s));
+                
+                for (int a = candidates.nextSetBit(0); a >= 0; a = candidates.nextSetBit(a + 1)) { // Ciclo de argumentos
+                    BitSet pending = pendingRules.get(a);
+                    
+                    if (!pending.intersects(stratum)) {
+                        continue;
+                    }
+                    
+                    // Solo se revisan las reglas del estrato afectadas por hechos nuevos
+                    for (int r = stratum.nextSetBit(0); r >= 0; r = stratum.nextSetBit(r + 1)) { // Ciclo de reglas
+                        if (pending.get(r)) {
+                            pending.clear(r);
+                            
+                            if (mayApply(rules.get(r), a)) {
+                                stratumChanged |= applyRule(r, indexedArguments.get(a), potentialFacts);
+                            }
+                        }
+                    }
+                }
+            } while (stratumChanged && stratification.isRecursive(s));
+            
+            if (topK > 0) {
+                pruneTopK(stratum);
+            }
+        }
+    }
+    
+    /**
+     * Indica si el programa no puede tener agregaciones, en cuyo caso el
+     * orden de evaluacion no cambia el grafo: reglas de una variable, cada
+     * predicado inferido por una unica regla y sin hechos iniciales, y sin
+     * hechos iniciales repetidos. Cada atomo tiene entonces a lo sumo un
+     * hecho y cada regla se aplica una vez por argumento
+     */
+    private static boolean withoutAggregation(List<Fact> facts, List<Rule> rules) {
+        Set<Integer> heads = new HashSet<>();
+        
+        for (Rule rule : rules) {
+            if (!rule.isSingleVariable() || !heads.add(rule.getHeadId())) {
+                return false;
+            }
+        }
+        
+        Set<Integer> atoms = new HashSet<>();
+        
+        for (Fact fact : facts) {
+            if (heads.contains(fact.getNameId()) || !atoms.add(fact.getAtomId())) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Conserva solo los topK hechos inferidos de mayor valor total de cada
+     * predicado del estrato. Solo se quitan hechos inferidos directamente
+     * por una regla, sin agregacion y que no se usaron para inferir otros
+     * hechos; sus inferencias no vuelven a realizarse
+     */
+    private void pruneTopK(BitSet stratum) {
+        Set<Integer> heads = new LinkedHashSet<>();
+        
+        for (int r = stratum.nextSetBit(0); r >= 0; r = stratum.nextSetBit(r + 1)) {
+            heads.add(rules.get(r).getHeadId());
+        }
+        
+        for (int head : heads) {
+            List<Fact> inferred = new ArrayList<>();
+            
+            for (Fact fact : facts) {
+                if (fact.getNameId() == head && predecessors.containsKey(fact)) {
+                    inferred.add(fact);
+                }
+            }
+            
+            if (inferred.size() <= topK) {
+                continue;
+            }
+            
+            // Orden estable: a igual valor se conservan los inferidos primero
+            inferred.sort(Comparator.comparingDouble((Fact fact) -> -Arrays.stream(fact.getAttributes()).sum()));
+            
+            for (Fact fact : inferred.subList(topK, inferred.size())) {
+                List<KnowledgePiece> sources = predecessors.get(fact);
+                
+                if (!edges.containsKey(fact) && graphNodes.get(fact.getAtomId()).size() == 1 
+                        && sources.stream().anyMatch(Rule.class::isInstance)) {
+                    removeInferredFact(fact);
+                }
+            }
+        }
+    }
+    
+    // Quita del grafo un hecho inferido y las aristas que llegan a el
+    private void removeInferredFact(Fact fact) {
+        for (KnowledgePiece source : predecessors.remove(fact)) {
+            List<Fact> targets = edges.get(source);
+            targets.remove(fact);
+            
+            if (targets.isEmpty()) {
+                edges.remove(source);
+                
+                if (source instanceof Fact sourceFact) {
+                    leaveGraphIfIsolated(sourceFact);
+                }
+            }
+            
+            if (source instanceof Rule rule) {
+                decrement(derivations, new Derivation(rule, fact.getAtomId()));
+                prunedDerivations.add(new Derivation(rule, fact.getAtomId()));
+                forgetJoinDerivation(fact);
+            }
+            savedEdges++;
+        }
+        
+        leaveGraphIfIsolated(fact);
+        removeFromFacts(fact);
+        beyondTopK++;
     }
     
     /**
-     * Clase que se encarga de la generacion de la estructura que
-     * representa las aristas de un grafo argumentativo
+     * Obtiene las posiciones de los argumentos en los que alguna regla de
+     * una variable del estrato puede aplicarse, combinando los bitsets de
+     * los predicados de cada cuerpo palabra por palabra. Una regla se
+     * aplica cuando la cantidad de hechos de su cuerpo es igual a su
+     * longitud, lo que requiere que esten todos los predicados o que
+     * alguno tenga hechos repetidos
      * 
-     * @return Estructura que representa las aristas del grafo en su atributo 
-     * "edges" y los nodos que se contradicen en su atributo "conflictiveNodes"
+     * En un estrato recursivo los bitsets cambian mientras se recorre,
+     * por lo que se recorren todos los argumentos
      */
-    public ArgumentativeGraph buildTree() {
+    private BitSet candidateArguments(BitSet stratum, boolean recursive) {
+        BitSet candidates = new BitSet(indexedArguments.size());
         
-        List<Fact> potentialFacts = new ArrayList<>();
-        boolean anyNewFact;
-        Fact newFact = null;
-        int bodyPartsVerified;
-        List<String> arguments = new ArrayList<>();
+        if (recursive) {
+            candidates.set(0, indexedArguments.size());
+            return candidates;
+        }
         
-        // Se obtienen todos los argumentos diferentes de los hechos
-        for (Fact fact : facts) {
-            if (!arguments.contains(fact.getArgument())) {
-                arguments.add(fact.getArgument());
+        for (int r = stratum.nextSetBit(0); r >= 0; r = stratum.nextSetBit(r + 1)) {
+            if (joinRules.get(r)) {
+                continue;
+            }
+            
+            BitSet ruleCandidates = new BitSet(indexedArguments.size());
+            ruleCandidates.set(0, indexedArguments.size());
+            BitSet repeated = new BitSet(indexedArguments.size());
+            
+            for (int bodypart : rules.get(r).getBodyIds()) {
+                ruleCandidates.and(predicateArguments.getOrDefault(bodypart, EMPTY));
+                repeated.or(repeatedArguments.getOrDefault(bodypart, EMPTY));
             }
+            
+            ruleCandidates.or(repeated);
+            candidates.or(ruleCandidates);
         }
         
-        do {
-            // Indica si se modifico el grafo y hay que repetir el ciclo
-            anyNewFact = false; 
-
-            for (String argument : arguments) { // Ciclo de argumentos
-                for (Rule rule : rules) { // Ciclo de reglas
-
-                    potentialFacts.clear();
-                    bodyPartsVerified = 0;
-
-                    for (String bodypart : rule.getBody()) { // Ciclo del cuerpo de cada regla
-                        for (Fact fact : facts) { // Ciclo de hechos                       
-                            
-                            if ( bodypart.equals(fact.getName()) && fact.getArgument().equals(argument)) {    
-                                // Nuevo hecho
-                                newFact = new Fact(rule.getHead(), fact.getArgument(), null);
-                                // Se cuenta el hecho dentro de los antecedentes de la regla
-                                potentialFacts.add(fact);
-                                bodyPartsVerified++;
-                            }
-                            
-                        }
-                    }
-
-                    if ( bodyPartsVerified == rule.getBody().size() 
-                            && !alreadyExists(newFact, rule) 
-                            && !anyAggregation(newFact) ) {
-
-                        addFact(potentialFacts, newFact, rule); // Añade un nuevo hecho 
-                        anyNewFact = true; // Indica que hay que repetir el ciclo
-                    } else if ( bodyPartsVerified == rule.getBody().size() 
-                            && !alreadyExists(newFact, rule) 
-                            && anyAggregation(newFact) ){
-
-                        doAggregation(potentialFacts, newFact, rule); // Añade un hecho con agregación 
-                        anyNewFact = true; // Indica que hay que repetir el ciclo
-                    }
+        return candidates;
+    }
+    
+    // Determina con los bitsets si la cantidad de hechos del cuerpo de la regla puede coincidir para un argumento
+    private boolean mayApply(Rule rule, int argument) {
+        boolean allPresent = true;
+        
+        for (int bodypart : rule.getBodyIds()) {
+            if (repeatedArguments.getOrDefault(bodypart, EMPTY).get(argument)) {
+                return true;
+            }
+            allPresent &= predicateArguments.getOrDefault(bodypart, EMPTY).get(argument);
+        }
+        
+        return allPresent;
+    }
+    
+    /**
+     * Evalua con joins las reglas con varias variables pendientes del
+     * estrato. Cada combinacion de hechos que satisface el cuerpo y que no
+     * se uso antes infiere un hecho propio, con esos hechos como
+     * antecedentes; si varias combinaciones infieren la misma tupla, sus
+     * hechos se agregan como los inferidos por reglas distintas
+     * 
+     * @return Verdadero si se modifico el grafo
+     */
+    private boolean applyJoinRules(BitSet stratum) {
+        boolean changed = false;
+        
+        for (int r = pendingJoins.nextSetBit(0); r >= 0; r = pendingJoins.nextSetBit(r + 1)) {
+            if (!stratum.get(r)) {
+                continue;
+            }
+            
+            pendingJoins.clear(r);
+            Rule rule = rules.get(r);
+            List<HashJoin.Match> matches = joins.get(r)
+                    .evaluate(name -> predicateIndex.getOrDefault(name, List.of()));
+            
+            for (HashJoin.Match match : matches) {
+                int argument = match.tuple();
+                int newAtom = SymbolTable.atom(rule.getHeadId(), argument);
+                JoinDerivation derivation = new JoinDerivation(rule, match.antecedents());
+                
+                if (joinDerivations.contains(derivation) || prunedDerivations.contains(new Derivation(rule, newAtom))) {
+                    continue;
+                }
+                
+                Fact newFact = derive(rule, argument, match.antecedents());
+                
+                if (newFact == null) {
+                    continue;
+                }
+                
+                // Las reglas de una variable tambien se revisan para los nuevos argumentos
+                if (SymbolTable.terms(argument).length == 1 && !argumentIndex.containsKey(argument)) {
+                    addArgument(argument);
+                }
+                
+                changed = true;
+                joinDerivations.add(derivation);
+                joinTargets.put(newFact, derivation);
+                
+                if ( !anyAggregation(newAtom) ) {
+                    addFact(match.antecedents(), newFact, rule);
+                } else {
+                    doAggregation(match.antecedents(), newFact, rule);
+                    // La agregacion pudo quitar hechos usados por las demas tuplas, se vuelve a evaluar la regla
+                    pendingJoins.set(r);
+                    break;
                 }
             }
+        }
+        
+        return changed;
+    }
+    
+    /**
+     * Aplica una regla sobre un argumento si todos los antecedentes
+     * estan presentes y el hecho no fue inferido antes por la misma regla
+     * 
+     * @return Verdadero si se modifico el grafo
+     */
+    private boolean applyRule(int r, int argument, List<Fact> potentialFacts) {
+        
+        Rule rule = rules.get(r);
+        boolean bodyVerified;
+        
+        if (compiledRules[r] != null) {
+            // Cuerpo desenrollado en la clase generada para la regla
+            bodyVerified = compiledRules[r].body(bodyFacts, argument, potentialFacts);
+        } else {
+            potentialFacts.clear();
             
+            for (int bodypart : rule.getBodyIds()) { // Ciclo del cuerpo de la regla
+                // Se cuentan los hechos dentro de los antecedentes de la regla
+                potentialFacts.addAll(indexedFacts(SymbolTable.atom(bodypart, argument)));
+            }
             
-        } while (anyNewFact);
+            bodyVerified = potentialFacts.size() == rule.getBodyIds().length;
+        }
         
-        conflict(); // Se resuelven los conflictos entre hechos
+        int newAtom = SymbolTable.atom(rule.getHeadId(), argument);
         
-        return new ArgumentativeGraph(edges, conflictiveNodes);
+        if (!bodyVerified || alreadyExists(newAtom, rule)) {
+            return false;
+        }
+        
+        // Nuevo hecho
+        Fact newFact = derive(rule, argument, potentialFacts);
+        
+        if (newFact == null) {
+            return false;
+        }
+        
+        if ( !anyAggregation(newAtom) ) {
+            addFact(potentialFacts, newFact, rule); // Añade un nuevo hecho 
+        } else {
+            doAggregation(potentialFacts, newFact, rule); // Añade un hecho con agregación 
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Crea el hecho que infiere una regla, con los valores calculados por
+     * la funcion de soporte
+     * 
+     * @return Nuevo hecho, o null si algun atributo queda debajo de su umbral
+     */
+    private Fact derive(Rule rule, int argument, List<Fact> potentialFacts) {
+        double[] values = support(potentialFacts, rule);
+        
+        if (thresholds != null) {
+            for (int i = 0; i < Math.min(values.length, thresholds.length); i++) {
+                if (values[i] < thresholds[i]) {
+                    // No se crean las aristas desde la regla y los antecedentes, cada pasada vuelve a intentarlo
+                    if (thresholdDerivations.add(new Derivation(rule, SymbolTable.atom(rule.getHeadId(), argument)))) {
+                        belowThreshold++;
+                        savedEdges += potentialFacts.size() + 1;
+                    }
+                    return null;
+                }
+            }
+        }
+        
+        Fact newFact = new Fact(rule.getHeadId(), argument, values);
+        
+        if (trace != null) {
+            trace.support(newFact, potentialFacts, rule);
+        }
+        
+        return newFact;
     }
     
     /**
@@ -106,24 +1371,15 @@ public class InferenceEngine {
      */
     private void addFact (List<Fact> potentialFacts, Fact newFact, Rule rule) {
         
-        // Calcular los valores las etiquetas del nuevo hecho 
-        newFact.setAttributes( support (potentialFacts, rule) );
-        
         // Añadir el nuevo hecho a la lista de hechos
-        facts.add(newFact); 
+        addToFacts(newFact); 
         
         // Añadir la arista desde la regla al nuevo hecho
-        if (!edges.containsKey(rule)) {
-            edges.put(rule, new ArrayList<>());
-        }
-        edges.get(rule).add(newFact);
+        addEdge(rule, newFact);
 
         // Añadir aristas desde los hechos que permitieron inferir el nuevo hecho
         for (Fact potentialFact : potentialFacts) {
-            if (!edges.containsKey(potentialFact)) {
-                edges.put(potentialFact, new ArrayList<>());
-            }
-            edges.get(potentialFact).add(newFact);
+            addEdge(potentialFact, newFact);
         }
     }
     
@@ -131,32 +1387,26 @@ public class InferenceEngine {
      * Calcula el valor de los atributos de un hecho inferido
      * con la operacion definida para el soporte
      */
-    private Double[] support (List<Fact> potentialFacts, Rule rule) {
-        Double[] atributtes = new Double[ potentialFacts.getFirst().getAttributes().length ];
-        Expression expression;
+    double[] support (List<Fact> potentialFacts, Rule rule) {
+        double[] atributtes = new double[ potentialFacts.getFirst().getAttributes().length ];
+        DoubleBinaryOperator function;
+        CompiledRule compiled = functions.rule(rule);
+        // Con funciones estandar el soporte siempre se calcula en la clase generada, no con vectores
+        double[] values = compiled != null ? compiled.support(potentialFacts) : null;
+        
+        if (values != null) {
+            return values;
+        }
         
         for (int i = 0; i < atributtes.length ; i++) {
             atributtes[i] = 0.0;
+            function = functions.support(i);
             // Reemplazar los valores de X y Y, y evaluar la funcion para cada uno de los antecedentes
             for (Fact fact : potentialFacts) {
-                
-                expression = new ExpressionBuilder( functions[i][0] )
-                        .variables("X", "Y")
-                        .build()
-                        .setVariable("X", atributtes[i])
-                        .setVariable("Y", fact.getAttributes()[i]);
-                
-                atributtes[i] = expression.evaluate();
-                
+                atributtes[i] = function.applyAsDouble(atributtes[i], fact.getAttributes()[i]);
             }
             // Reemplazar los valores de X y Y, y evaluar la funcion para la regla
-            expression = new ExpressionBuilder( functions[i][0] )
-                    .variables("X", "Y")
-                    .build()
-                    .setVariable("X", atributtes[i])
-                    .setVariable("Y", rule.getAttributes()[i]);
-            
-            atributtes[i] = expression.evaluate();
+            atributtes[i] = function.applyAsDouble(atributtes[i], rule.getAttributes()[i]);
             // Ubicar los valores en el intervalo [0, 1]
             if (atributtes[i]>1) {
                 atributtes[i] = 1.0;
@@ -168,94 +1418,257 @@ public class InferenceEngine {
         return atributtes;
     }
      
+    /**
+     * Construye los indices de hechos y reglas, y marca todas las
+     * reglas como pendientes de revision para cada argumento
+     */
+    private void buildIndexes(Set<Integer> arguments) {
+        factIndex.clear();
+        ruleIndex.clear();
+        argumentIndex.clear();
+        indexedArguments.clear();
+        pendingRules.clear();
+        predicateArguments.clear();
+        repeatedArguments.clear();
+        joinIndex.clear();
+        predicateIndex.clear();
+        
+        for (Fact fact : facts) {
+            factIndex.computeIfAbsent(fact.getAtomId(), atom -> new ArrayList<>()).add(fact);
+            
+            if (!joinRules.isEmpty()) {
+                predicateIndex.computeIfAbsent(fact.getNameId(), name -> new ArrayList<>()).add(fact);
+            }
+        }
+        
+        for (int r = 0; r < rules.size(); r++) {
+            Map<Integer, BitSet> index = joinRules.get(r) ? joinIndex : ruleIndex;
+            
+            for (int bodypart : rules.get(r).getBodyIds()) {
+                index.computeIfAbsent(bodypart, name -> new BitSet()).set(r);
+            }
+        }
+        
+        for (int argument : arguments) {
+            addArgument(argument);
+        }
+        
+        for (Fact fact : facts) {
+            updateArgumentBits(fact);
+        }
+        
+        pendingJoins.or(joinRules);
+    }
+    
+    // Registra un argumento con todas las reglas de una variable pendientes de revision
+    private void addArgument(int argument) {
+        BitSet pending = new BitSet(rules.size());
+        pending.set(0, rules.size());
+        pending.andNot(joinRules);
+        argumentIndex.put(argument, indexedArguments.size());
+        indexedArguments.add(argument);
+        pendingRules.add(pending);
+    }
+    
+    // Actualiza los bitsets del predicado de un hecho para su argumento
+    private void updateArgumentBits(Fact fact) {
+        Integer argument = argumentIndex.get(fact.getArgumentId());
+        
+        if (argument != null) {
+            int count = indexedFacts(fact.getAtomId()).size();
+            predicateArguments.computeIfAbsent(fact.getNameId(), name -> new BitSet()).set(argument, count > 0);
+            repeatedArguments.computeIfAbsent(fact.getNameId(), name -> new BitSet()).set(argument, count > 1);
+            changedArguments.set(argument);
+        }
+    }
+    
+    // Obtiene los hechos con un nombre y argumento (atomo) dados, en el orden de la lista de hechos
+    private List<Fact> indexedFacts(int atom) {
+        return factIndex.getOrDefault(atom, List.of());
+    }
+    
+    // Añade un hecho a la lista y al indice, y marca las reglas que lo usan
+    private void addToFacts(Fact fact) {
+        facts.add(fact);
+        factIndex.computeIfAbsent(fact.getAtomId(), atom -> new ArrayList<>()).add(fact);
+        
+        if (!joinRules.isEmpty()) {
+            predicateIndex.computeIfAbsent(fact.getNameId(), name -> new ArrayList<>()).add(fact);
+        }
+        updateArgumentBits(fact);
+        markPending(fact);
+    }
+    
+    // Remueve un hecho de la lista y del indice, y marca las reglas que lo usaban
+    private void removeFromFacts(Fact fact) {
+        facts.remove(fact);
+        indexedFacts(fact.getAtomId()).remove(fact);
+        
+        if (!joinRules.isEmpty()) {
+            predicateIndex.get(fact.getNameId()).remove(fact);
+        }
+        updateArgumentBits(fact);
+        markPending(fact);
+    }
+    
+    // Marca como pendientes las reglas cuyo cuerpo contiene el predicado del hecho
+    private void markPending(Fact fact) {
+        BitSet affectedRules = ruleIndex.get(fact.getNameId());
+        Integer argument = argumentIndex.get(fact.getArgumentId());
+        
+        if (affectedRules != null && argument != null) {
+            pendingRules.get(argument).or(affectedRules);
+        }
+        
+        BitSet affectedJoins = joinIndex.get(fact.getNameId());
+        
+        if (affectedJoins != null) {
+            pendingJoins.or(affectedJoins);
+        }
+    }
+    
+    // Marca una regla como pendiente para todos los argumentos
+    private void markPending(Rule rule) {
+        for (int r = 0; r < rules.size(); r++) {
+            if (rules.get(r) == rule && joinRules.get(r)) {
+                pendingJoins.set(r);
+            } else if (rules.get(r) == rule) {
+                for (BitSet pending : pendingRules) {
+                    pending.set(r);
+                }
+            }
+        }
+    }
+    
     /**
      * Determina si dos hechos son iguales
      */
     private boolean equalFacts (Fact firstFact, Fact secondFact) {
-        return firstFact.getName().equals(secondFact.getName()) 
-                && firstFact.getArgument().equals(secondFact.getArgument());
+        return firstFact.getAtomId() == secondFact.getAtomId();
     } 
     
     /**
      * Determina si una inferencia en 
-     * particular ya fue realizada
+     * particular ya fue realizada, o si fue quitada por la poda
      */
-    private boolean alreadyExists (Fact newFact, Rule rule) {
-        boolean existsRule = false;
-
-        for ( Map.Entry<KnowledgePiece, List<Fact>> edge : edges.entrySet() ) {
-            for (Fact fact : edge.getValue()) {
-                if ( equalFacts(fact, newFact) && edge.getKey() == rule ) {
-                    existsRule = true;
-                }
-            }
-        }
+    private boolean alreadyExists (int newAtom, Rule rule) {
+        Derivation derivation = new Derivation(rule, newAtom);
         
-        return existsRule;
+        return derivations.containsKey(derivation) || prunedDerivations.contains(derivation);
     }
     
     // Determina si existe agregacion cada vez que se infiere un nuevo hecho
-    private boolean anyAggregation(Fact newFact) {
-        boolean aggregation = false;
-
-        for (Map.Entry<KnowledgePiece, List<Fact>> entry : edges.entrySet()) {
-            KnowledgePiece key = entry.getKey();
-
-            if (key instanceof Fact && equalFacts((Fact) key, newFact)) {
-                aggregation = true;
-                break;
+    private boolean anyAggregation(int newAtom) {
+        return graphNodes.containsKey(newAtom);
+    }
+    
+    // Añade una arista al grafo y actualiza el indice de inferencias
+    private void addEdge(KnowledgePiece source, Fact target) {
+        if (!edges.containsKey(source)) {
+            edges.put(source, new ArrayList<>());
+            
+            if (source instanceof Fact fact) {
+                graphNodes.computeIfAbsent(fact.getAtomId(), atom -> new LinkedHashSet<>()).add(fact);
             }
-
-            for (Fact fact : entry.getValue()) {
-                if (equalFacts(fact, newFact)) {
-                    aggregation = true;
-                    break;
-                }
+        }
+        edges.get(source).add(target);
+        predecessors.computeIfAbsent(target, fact -> new ArrayList<>()).add(source);
+        
+        graphNodes.computeIfAbsent(target.getAtomId(), atom -> new LinkedHashSet<>()).add(target);
+        
+        if (source instanceof Rule rule) {
+            derivations.merge(new Derivation(rule, target.getAtomId()), 1, Integer::sum);
+        }
+    }
+    
+    // Elimina todas las aristas que salen de un nodo y actualiza el indice de inferencias
+    private boolean removeEdges(KnowledgePiece source) {
+        List<Fact> targets = edges.remove(source);
+        
+        if (targets == null) {
+            return false;
+        }
+        
+        if (source instanceof Fact fact) {
+            leaveGraphIfIsolated(fact);
+        }
+        
+        for (Fact target : targets) {
+            List<KnowledgePiece> sources = predecessors.get(target);
+            sources.remove(source);
+            
+            if (sources.isEmpty()) {
+                predecessors.remove(target);
             }
-
-            if (aggregation) {
-                break;
+            leaveGraphIfIsolated(target);
+            
+            if (source instanceof Rule rule) {
+                decrement(derivations, new Derivation(rule, target.getAtomId()));
+                forgetJoinDerivation(target);
             }
         }
-
-        return aggregation;
+        
+        return true;
+    }
+    
+    // Permite volver a usar la combinacion con la que se infirio un hecho que perdio la arista desde su regla
+    private void forgetJoinDerivation(Fact target) {
+        JoinDerivation derivation = joinTargets.remove(target);
+        
+        if (derivation != null) {
+            joinDerivations.remove(derivation);
+        }
+    }
+    
+    // Quita un hecho del indice de nodos cuando ya no tiene aristas
+    private void leaveGraphIfIsolated(Fact fact) {
+        if (edges.containsKey(fact) || predecessors.containsKey(fact)) {
+            return;
+        }
+        
+        Set<Fact> instances = graphNodes.get(fact.getAtomId());
+        instances.remove(fact);
+        
+        if (instances.isEmpty()) {
+            graphNodes.remove(fact.getAtomId());
+        }
+    }
+    
+    // Resta una aparicion de una clave y la elimina al llegar a cero
+    private static <K> void decrement(Map<K, Integer> counts, K key) {
+        counts.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
     }
 
     // Realiza la agregación entre hechos, vuelve a construir el arbol
     private void doAggregation(List<Fact> potentialFacts, Fact newFact, Rule rule) {
         Fact auxFact = null;
+        List<Fact> equalFacts = indexedFacts(newFact.getAtomId());
 
-        for (Fact fact : facts) {
-            if (equalFacts(fact, newFact)) {
-                auxFact = fact; // Se encuentra el hecho igual en la lista
-                break;
-            }
+        if (!equalFacts.isEmpty()) {
+            auxFact = equalFacts.getFirst(); // Se encuentra el hecho igual en la lista
         }
 
         if (auxFact != null) {
-            facts.remove(auxFact); // Se remueve el hecho igual de la lista hechos
+            removeFromFacts(auxFact); // Se remueve el hecho igual de la lista hechos
         } else {
             auxFact = combineFacts(newFact);
         }
 
-        newFact.setAttributes(support(potentialFacts, rule)); // Calcular los valores de la inferencia
         // Añadir la arista desde la regla al nuevo hecho
-        if (!edges.containsKey(rule)) {
-            edges.put(rule, new ArrayList<>());
-        }
-        edges.get(rule).add(newFact);
+        addEdge(rule, newFact);
 
         // Añadir aristas desde los hechos que permitieron inferir el nuevo hecho
         for (Fact potentialFact : potentialFacts) {
-            if (!edges.containsKey(potentialFact)) {
-                edges.put(potentialFact, new ArrayList<>());
-            }
-            edges.get(potentialFact).add(newFact);
+            addEdge(potentialFact, newFact);
         }
 
-        Fact aggregatedFact = new Fact(newFact.getName(), newFact.getArgument(), calculateAggregation(newFact, auxFact)); // Se calcula el hecho agregado
+        Fact aggregatedFact = new Fact(newFact.getNameId(), newFact.getArgumentId(), calculateAggregation(newFact, auxFact)); // Se calcula el hecho agregado
+        
+        if (trace != null) {
+            trace.aggregation(aggregatedFact, List.of(newFact, auxFact));
+        }
         // Se agrega el nuevo hecho a la lista
-        facts.add(aggregatedFact);
+        addToFacts(aggregatedFact);
         // Reconstruir el árbol para el nuevo hecho
         reBuilTree(aggregatedFact);
     }
@@ -263,20 +1676,23 @@ public class InferenceEngine {
     // Crea un nuevo hecho agregado a partir de hechos iguales en el grafo
     private Fact combineFacts (Fact newFact) {
         List<Fact> aggregatedFacts = new ArrayList<>();
-        // Se buscan los hechos iguales el nuevo hecho que no estan en la lista    
-        for (Map.Entry<KnowledgePiece, List<Fact>> edge : edges.entrySet()) { 
-            if (edge.getKey() instanceof Fact && equalFacts( (Fact) edge.getKey(), newFact) ) {
-                aggregatedFacts.add((Fact) edge.getKey());
+        // Se buscan los hechos iguales el nuevo hecho que no estan en la lista,
+        // una vez como origen y una vez por cada arista que llega a ellos
+        for (Fact piece : graphNodes.getOrDefault(newFact.getAtomId(), Set.of())) {
+            if (edges.containsKey(piece)) {
+                aggregatedFacts.add(piece);
             }
             
-            for (Fact piece : edge.getValue()) {
-                if ( equalFacts(piece, newFact) ) {
-                    aggregatedFacts.add( piece );
-                }
-            }
+            aggregatedFacts.addAll(Collections.nCopies(predecessors.getOrDefault(piece, List.of()).size(), piece));
         }
         // Se combina los hechos encontrados en un unico hecho agregado
-        return new Fact(newFact.getName(), newFact.getArgument(), calculateAggregation(aggregatedFacts) );
+        Fact combinedFact = new Fact(newFact.getNameId(), newFact.getArgumentId(), calculateAggregation(aggregatedFacts) );
+        
+        if (trace != null) {
+            trace.aggregation(combinedFact, aggregatedFacts);
+        }
+        
+        return combinedFact;
     }
         
     // Reconstruye el grafo cada vez que se identifica una nueva agregacion
@@ -285,75 +1701,75 @@ public class InferenceEngine {
         removableEdges.clear();
         
         Set<KnowledgePiece> newEdges = new HashSet<>(); // Nodos origen de las nuevas aristas hacia el nodo agregado
-        // Se recorre el grafo buscando hechos iguales
-        for (Map.Entry<KnowledgePiece, List<Fact>> entry : edges.entrySet()) {
+        // Se recorren solo los hechos iguales presentes en el grafo
+        for (Fact fact : graphNodes.getOrDefault(newFact.getAtomId(), Set.of())) {
             // Se buscan las aristas que se originen en los nodos agregados
-            if ( entry.getKey() instanceof Fact && equalFacts( (Fact) entry.getKey(), newFact ) ) {
+            if ( edges.containsKey(fact) ) {
                 
-                newEdges.add(entry.getKey());
-                removableEdges.add( (Fact) entry.getKey() );
+                newEdges.add(fact);
+                removableEdges.add(fact);
                 
                 // Eliminar los nodos superiores la nueva agregacion
-                eraseUpperNodes( entry.getValue() );
-            } else {
-                for (Fact fact : entry.getValue()) {
-                    if ( equalFacts(fact, newFact) ) {
-                        newEdges.add(fact);
-                    }
+                eraseUpperNodes( edges.get(fact) );
+            }
+            // Se buscan los hechos iguales que son destino de nodos no agregados
+            for (KnowledgePiece source : predecessors.getOrDefault(fact, List.of())) {
+                if ( !(source instanceof Fact sourceFact && equalFacts(sourceFact, newFact)) ) {
+                    newEdges.add(fact);
+                    break;
                 }
             }
         }
         // Se eliminan las aristas
         for (KnowledgePiece removableEdge : removableEdges) {
-            edges.remove(removableEdge);
+            if (removeEdges(removableEdge) && removableEdge instanceof Rule rule) {
+                // La regla perdio sus inferencias y debe revisarse para todos los argumentos
+                markPending(rule);
+            }
         }
         // Se agregan aristas desde los nodos agregados hacia el nuevo nodo
         for (KnowledgePiece edge : newEdges) {
-            if (!edges.containsKey(edge)) {
-                edges.put(edge, new ArrayList<>());
-            }
-            edges.get(edge).add(newFact);
+            addEdge(edge, newFact);
         }
     }
     
     // Eliminar los nodos superiores dado un conjunto de nodos
-    public void eraseUpperNodes (List<Fact> values) {        
-        for (Fact value : values) {
-            // Eliminar nodos superiores recursivamente
+    public void eraseUpperNodes (List<Fact> values) {
+        Deque<Fact> pendingNodes = new ArrayDeque<>(values);
+        Set<Fact> visitedNodes = new HashSet<>();
+        
+        // Se recorren los nodos superiores sin recursion, una vez cada uno
+        while (!pendingNodes.isEmpty()) {
+            Fact value = pendingNodes.pop();
+            
+            if (!visitedNodes.add(value)) {
+                continue;
+            }
+            // Recorrer los nodos superiores
             if (edges.containsKey(value)) {
-                eraseUpperNodes(edges.get(value));
+                pendingNodes.addAll(edges.get(value));
             }
             // Eliminacion del nodo
             removableEdges.add(value); 
             // Eliminar aristas que tengan como destino el nodo eliminado
-            for (Map.Entry<KnowledgePiece, List<Fact>> entry : edges.entrySet()) {
-                for (Fact fact : entry.getValue()) {
-                    if ( fact == value ) {
-                        removableEdges.add(entry.getKey()); 
-                    }
-                }
-            }
+            removableEdges.addAll(predecessors.getOrDefault(value, List.of()));
         } 
     }
     
     // Calcular los valores de los atributos cuando hay agregacion
-    private Double[] calculateAggregation(Fact newFact, Fact removableFact) {
-        Double[] atributtes = new Double[ newFact.getAttributes().length ];
-        Expression expression;
+    double[] calculateAggregation(Fact newFact, Fact removableFact) {
+        double[] atributtes = new double[ newFact.getAttributes().length ];
+        
+        if (functions.isVectorized(CompiledFunctions.AGGREGATION)) {
+            return functions.vector().fold(CompiledFunctions.AGGREGATION, 
+                    newFact.getAttributes(), List.of(), removableFact.getAttributes());
+        }
         
         for (int i = 0; i < atributtes.length ; i++) {
             
-            atributtes[i] = 0.0;
-            
-            // Reemplazar las variables X y Y de la expresion
-            expression = new ExpressionBuilder( functions[i][1] )
-                    .variables("X", "Y")
-                    .build()
-                    .setVariable("X", newFact.getAttributes()[i])
-                    .setVariable("Y", removableFact.getAttributes()[i]);
-            
-            // Evaluar la expresion con los parametros actuales
-            atributtes[i] = expression.evaluate();
+            // Evaluar la funcion de agregacion con los valores de ambos hechos
+            atributtes[i] = functions.aggregation(i)
+                    .applyAsDouble(newFact.getAttributes()[i], removableFact.getAttributes()[i]);
             
             // Ubicar los valores en el intervalo [0, 1]
             if (atributtes[i]>1) {
@@ -368,29 +1784,23 @@ public class InferenceEngine {
     }
 
     // Calcular los valores de los atributos cuando hay agregacion en hechos que no estan en la lista
-    private Double[] calculateAggregation(List<Fact> aggregatedFacts) {
-        Double[] atributtes = new Double[ aggregatedFacts.getFirst().getAttributes().length ];
-        Expression expression;
+    double[] calculateAggregation(List<Fact> aggregatedFacts) {
+        double[] atributtes = new double[ aggregatedFacts.getFirst().getAttributes().length ];
+        
+        if (functions.isVectorized(CompiledFunctions.AGGREGATION)) {
+            return functions.vector().fold(CompiledFunctions.AGGREGATION, 
+                    aggregatedFacts.getFirst().getAttributes(), aggregatedFacts.subList(1, aggregatedFacts.size()), null);
+        }
         
         for (int i = 0; i < atributtes.length ; i++) {
             
-            atributtes[i] = null;
+            // El primer hecho inicializa el valor acumulado
+            atributtes[i] = aggregatedFacts.getFirst().getAttributes()[i];
             
-            for (Fact fact : aggregatedFacts) {
-                
-                if(atributtes[i] == null){
-                    atributtes[i] = fact.getAttributes()[i];
-                } else {
-                    // Reemplazar las variables X y Y de la expresion
-                    expression = new ExpressionBuilder(functions[i][1])
-                            .variables("X", "Y")
-                            .build()
-                            .setVariable("X", atributtes[i])
-                            .setVariable("Y", fact.getAttributes()[i]);
-                    
-                    // Evaluar la expresion con los parametros actuales
-                    atributtes[i] = expression.evaluate();
-                }
+            for (Fact fact : aggregatedFacts.subList(1, aggregatedFacts.size())) {
+                // Evaluar la funcion de agregacion con el valor acumulado
+                atributtes[i] = functions.aggregation(i)
+                        .applyAsDouble(atributtes[i], fact.getAttributes()[i]);
             }
             
             // Ubicar los valores en el intervalo [0, 1]
@@ -406,53 +1816,83 @@ public class InferenceEngine {
     }
     
     // Trata conflictos entre hechos que se contradicen
-    private void conflict() {
-        List<Fact> negativeFacts = new ArrayList<>();
-        Double[] Attributte1;
-        Double[] Attributte2;
+    void conflict() {
+        List<Pair> pairs = new ArrayList<>();
         
-        // Capturar todos los hechos con una negación
-        for (Fact fact : facts) {
-            if (fact.getName().contains("~")) {
-                negativeFacts.add(fact);
+        // Buscar en el indice los hechos que contradicen a cada hecho con una negación
+        for (Fact nf : facts) {
+            int positive = SymbolTable.positive(nf.getNameId());
+            
+            if (positive != nf.getNameId()) {
+                for (Fact fact : indexedFacts(SymbolTable.atom(positive, nf.getArgumentId()))) {
+                    pairs.add(new Pair(nf, fact));
+                }
             }
         }
-
-        // Recorrer todos los hechos con una negación
-        for (Fact nf : negativeFacts) {
-            // Recorrer todos los hechos y compararlos con los hechos negados
-            for (Fact fact : facts) {
-                if (nf.getName().replace("~", "").equals(fact.getName()) &&
-                    nf.getArgument().equals(fact.getArgument())) {
-                    
-                    Attributte1 = calculateAttack(nf, fact);
-                    Attributte2 = calculateAttack(fact, nf);
-                    
-                    nf.setDeltaAttributes(Attributte1);
-                    fact.setDeltaAttributes(Attributte2);
-                    
-                    conflictiveNodes.add(new Pair(nf, fact));
-                }
+        
+        // Calcular los ataques de todos los pares en un unico lote
+        double[][] attacks = calculateAttacks(pairs);
+        
+        // Asignar los valores debilitados en el orden de los pares
+        for (int p = 0; p < pairs.size(); p++) {
+            pairs.get(p).first().setDeltaAttributes(attacks[2 * p]);
+            pairs.get(p).second().setDeltaAttributes(attacks[2 * p + 1]);
+            
+            if (trace != null) {
+                trace.attack(pairs.get(p).first(), pairs.get(p).second());
+                trace.attack(pairs.get(p).second(), pairs.get(p).first());
             }
         }
+        
+        conflictiveNodes.addAll(pairs);
+    }
+    
+    /**
+     * Calcula los ataques en ambos sentidos para cada par en conflicto.
+     * Los lotes grandes se reparten entre los hilos del pool comun,
+     * cada porcion con su copia de las funciones
+     * 
+     * @return Arreglo con los atributos del primer hecho de cada par en
+     * la posicion 2p y los del segundo hecho en la posicion 2p+1
+     */
+    private double[][] calculateAttacks(List<Pair> pairs) {
+        double[][] attacks = new double[2 * pairs.size()][];
+        
+        if (pairs.size() < PARALLEL_CONFLICT_THRESHOLD) {
+            calculateAttacks(pairs, attacks, 0, pairs.size(), functions);
+        } else {
+            int chunks = 4 * ForkJoinPool.getCommonPoolParallelism();
+            
+            IntStream.range(0, chunks).parallel().forEach(c -> calculateAttacks(pairs, attacks,
+                    c * pairs.size() / chunks, (c + 1) * pairs.size() / chunks, functions.copy()));
+        }
+        
+        return attacks;
+    }
+    
+    // Calcula los ataques de una porcion de los pares
+    private static void calculateAttacks(List<Pair> pairs, double[][] attacks, int from, int to, CompiledFunctions evaluators) {
+        if (evaluators.isVectorized(CompiledFunctions.CONFLICT) 
+                && evaluators.vector().attacks(pairs, attacks, from, to)) {
+            return; // Cada atributo se calculo para varios pares a la vez
+        }
+        
+        for (int p = from; p < to; p++) {
+            Pair pair = pairs.get(p);
+            attacks[2 * p] = calculateAttack(pair.first(), pair.second(), evaluators);
+            attacks[2 * p + 1] = calculateAttack(pair.second(), pair.first(), evaluators);
+        }
     }
     
     // Calcular valores de los atributos para los hechos en conflicto
-    private Double[] calculateAttack (Fact f1, Fact f2) {
-        Double[] attributtes = new Double[f1.getAttributes().length]; // Array vacio
-        Expression expression;
+    static double[] calculateAttack (Fact f1, Fact f2, CompiledFunctions evaluators) {
+        double[] attributtes = new double[f1.getAttributes().length]; // Array vacio
         
         for (int i = 0; i < attributtes.length; i++) { 
             
-            // Reemplazar las variables X y Y de la expresion
-            expression = new ExpressionBuilder( functions[i][2] )
-                    .variables("X", "Y")
-                    .build()
-                    .setVariable("X", f1.getAttributes()[i])
-                    .setVariable("Y", f2.getAttributes()[i]);
-            
-            // Evaluar la expresion con los parametros actuales
-            attributtes[i] = expression.evaluate();
+            // Evaluar la funcion de conflicto con los valores de ambos hechos
+            attributtes[i] = evaluators.conflict(i)
+                    .applyAsDouble(f1.getAttributes()[i], f2.getAttributes()[i]);
             
             // Ubicar los valores en el intervalo [0, 1]
             if (attributtes[i]>1) {
@@ -465,4 +1905,4 @@ public class InferenceEngine {
         
         return attributtes;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,139 @@
+package InferenceEngine;
+
+import KnowledgePieces.Fact;
+import KnowledgePieces.Rule;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Clase que registra, durante la generacion del grafo, cada operacion que
+ * calcula los atributos de un hecho: soporte, agregacion y ataque. Que
+ * reglas se aplican y que hechos se agregan o entran en conflicto no
+ * depende de las funciones, solo los valores. Por eso la traza puede
+ * volver a evaluarse con otras matrices de funciones sobre el mismo grafo,
+ * sin repetir la busqueda de reglas ni la reconstruccion del arbol
+ */
+class OperationTrace {
+
+    /**
+     * Operacion sobre un hecho (posicion en la traza). Para la agregacion
+     * y el ataque el primer hecho de entrada es el valor inicial; el
+     * soporte parte de cero. El ultimo valor, si existe, es el de la regla
+     */
+    private record Operation(int column, int target, int[] inputs, double[] last) {}
+
+    // Posicion de cada hecho que participa de la traza
+    private final Map<Fact, Integer> positions;
+    // Valores de cada hecho inicial, null para los hechos inferidos
+    private final List<double[]> initialValues;
+    private final List<Operation> operations;
+
+    OperationTrace(List<Fact> facts) {
+        this.positions = new IdentityHashMap<>();
+        this.initialValues = new ArrayList<>();
+        this.operations = new ArrayList<>();
+
+        for (Fact fact : facts) {
+            initialValues.set(position(fact), fact.getAttributes());
+        }
+    }
+
+    // Obtiene la posicion de un hecho, asignando la siguiente si es nuevo
+    private int position(Fact fact) {
+        return positions.computeIfAbsent(fact, piece -> {
+            initialValues.add(null);
+            return initialValues.size() - 1;
+        });
+    }
+
+    private int[] positions(List<Fact> facts) {
+        return facts.stream().mapToInt(this::position).toArray();
+    }
+
+    // Registra el soporte de un hecho inferido a partir de sus antecedentes y la regla
+    void support(Fact target, List<Fact> antecedents, Rule rule) {
+        operations.add(new Operation(CompiledFunctions.SUPPORT, position(target), positions(antecedents), rule.getAttributes()));
+    }
+
+    // Registra la agregacion de varios hechos iguales en un unico hecho
+    void aggregation(Fact target, List<Fact> aggregated) {
+        operations.add(new Operation(CompiledFunctions.AGGREGATION, position(target), positions(aggregated), null));
+    }
+
+    // Registra el ataque de un hecho sobre otro, que debilita al atacado
+    void attack(Fact target, Fact attacker) {
+        operations.add(new Operation(CompiledFunctions.CONFLICT, position(target),
+                new int[] {position(target), position(attacker)}, null));
+    }
+
+    /**
+     * Vuelve a evaluar la traza con cada matriz de funciones. Las
+     * configuraciones son independientes y se evaluan en paralelo, cada
+     * una con sus propias funciones compiladas
+     *
+     * @param graph Grafo generado mientras se registraba la traza
+     * @param configurations Matrices de funciones a evaluar
+     * @return Valores de los hechos del grafo para cada configuracion
+     */
+    SweepResult replay(ArgumentativeGraph graph, List<String[][]> configurations) {
+        double[][][] attributes = new double[configurations.size()][][];
+        double[][][] deltaAttributes = new double[configurations.size()][][];
+
+        IntStream.range(0, configurations.size()).parallel().forEach(c -> {
+            CompiledFunctions functions = new CompiledFunctions(configurations.get(c));
+            double[][] values = initialValues.toArray(new double[0][]);
+            double[][] deltas = values.clone();
+
+            for (Operation operation : operations) {
+                double[] result = evaluate(operation, functions, values);
+
+                if (operation.column() != CompiledFunctions.CONFLICT) {
+                    values[operation.target()] = result;
+                }
+                deltas[operation.target()] = result;
+            }
+
+            attributes[c] = values;
+            deltaAttributes[c] = deltas;
+        });
+
+        return new SweepResult(graph, positions, attributes, deltaAttributes);
+    }
+
+    // Evalua una operacion con los valores ya calculados de sus hechos de entrada
+    private static double[] evaluate(Operation operation, CompiledFunctions functions, double[][] values) {
+        int[] inputs = operation.inputs();
+        boolean fromZero = operation.column() == CompiledFunctions.SUPPORT;
+        double[] result = new double[values[inputs[0]].length];
+
+        for (int i = 0; i < result.length; i++) {
+            DoubleBinaryOperator function = switch (operation.column()) {
+                case CompiledFunctions.SUPPORT -> functions.support(i);
+                case CompiledFunctions.AGGREGATION -> functions.aggregation(i);
+                default -> functions.conflict(i);
+            };
+
+            result[i] = fromZero ? 0.0 : values[inputs[0]][i];
+
+            for (int j = fromZero ? 0 : 1; j < inputs.length; j++) {
+                result[i] = function.applyAsDouble(result[i], values[inputs[j]][i]);
+            }
+
+            if (operation.last() != null) {
+                result[i] = function.applyAsDouble(result[i], operation.last()[i]);
+            }
+            // Ubicar los valores en el intervalo [0, 1]
+            if (result[i] > 1) {
+                result[i] = 1.0;
+            } else if (result[i] < 0) {
+                result[i] = 0.0;
+            }
+        }
+
+        return result;
+    }
+}
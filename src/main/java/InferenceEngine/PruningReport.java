@@ -0,0 +1,8 @@
+package InferenceEngine;
+
+/**
+ * Trabajo evitado por la poda de hechos inferidos: inferencias descartadas
+ * por estar debajo del umbral, hechos quitados por superar el limite de su
+ * predicado y aristas que no se agregaron o se quitaron por ambos motivos
+ */
+public record PruningReport(int belowThreshold, int beyondTopK, int savedEdges) {}
@@ -0,0 +1,14 @@
+package InferenceEngine;
+
+import KnowledgePieces.Fact;
+import java.util.List;
+
+/**
+ * Resultado de una consulta dirigida por un objetivo. goalFacts tiene los
+ * hechos del objetivo con sus atributos y atributos debilitados, incluso
+ * si es un hecho inicial sin aristas; si esta vacia, el objetivo no es un
+ * hecho inicial ni puede inferirse. contraryFacts tiene lo mismo para el
+ * contrario del objetivo. El grafo tiene los nodos que soportan a ambos y
+ * los conflictos del objetivo, y puede estar vacio aunque haya hechos
+ */
+public record QueryResult(ArgumentativeGraph graph, List<Fact> goalFacts, List<Fact> contraryFacts) {}
@@ -0,0 +1,276 @@
+package InferenceEngine;
+
+import KnowledgePieces.Rule;
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.classfile.Opcode;
+import java.lang.classfile.TypeKind;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDescs;
+import java.lang.constant.MethodTypeDesc;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Clase que genera, con la API ClassFile, una clase oculta por regla. La
+ * revision del cuerpo queda desenrollada con los predicados como
+ * constantes, y el soporte de cada atributo como codigo en linea: los
+ * antecedentes en sus posiciones fijas, los operadores como instrucciones,
+ * el valor de la regla como constante y el ajuste al intervalo [0, 1].
+ * Solo se especializa el soporte de las reglas cuyas funciones son
+ * estandar, ya que el resto se evalua con exp4j. Las clases se guardan
+ * por cuerpo, valores y operadores, de modo que varios motores con el
+ * mismo programa no vuelven a generarlas
+ */
+final class RuleCompiler {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // Clases ya generadas, con referencias que se liberan ante falta de memoria
+    private static final Map<Key, SoftReference<CompiledRule>> CACHE = new ConcurrentHashMap<>();
+
+    // Nombre base de las clases generadas, que quedan en el paquete del motor
+    private static final ClassDesc CD_GENERATED = ClassDesc.of("InferenceEngine.RuleCompiler$Rule");
+    private static final ClassDesc CD_COMPILED_RULE = ClassDesc.of("InferenceEngine.CompiledRule");
+    private static final ClassDesc CD_FACT_INDEX = ClassDesc.of("InferenceEngine.CompiledRule$FactIndex");
+    private static final ClassDesc CD_RULE_COMPILER = ClassDesc.of("InferenceEngine.RuleCompiler");
+    private static final ClassDesc CD_FACT = ClassDesc.of("KnowledgePieces.Fact");
+    private static final ClassDesc CD_COLLECTION = ClassDesc.of("java.util.Collection");
+    private static final ClassDesc CD_MATH = ClassDesc.of("java.lang.Math");
+
+    private static final MethodTypeDesc MTD_BODY = MethodTypeDesc.of(ConstantDescs.CD_boolean,
+            CD_FACT_INDEX, ConstantDescs.CD_int, ConstantDescs.CD_List);
+    private static final MethodTypeDesc MTD_SUPPORT = MethodTypeDesc.of(ConstantDescs.CD_double.arrayType(),
+            ConstantDescs.CD_List);
+    private static final MethodTypeDesc MTD_FACTS = MethodTypeDesc.of(ConstantDescs.CD_List,
+            ConstantDescs.CD_int, ConstantDescs.CD_int);
+    private static final MethodTypeDesc MTD_ADD_ALL = MethodTypeDesc.of(ConstantDescs.CD_boolean, CD_COLLECTION);
+    private static final MethodTypeDesc MTD_SIZE = MethodTypeDesc.of(ConstantDescs.CD_int);
+    private static final MethodTypeDesc MTD_GET = MethodTypeDesc.of(ConstantDescs.CD_Object, ConstantDescs.CD_int);
+    private static final MethodTypeDesc MTD_ATTRIBUTES = MethodTypeDesc.of(ConstantDescs.CD_double.arrayType());
+    private static final MethodTypeDesc MTD_OPERATOR = MethodTypeDesc.of(ConstantDescs.CD_double,
+            ConstantDescs.CD_double, ConstantDescs.CD_double);
+    private static final MethodTypeDesc MTD_CLAMP = MethodTypeDesc.of(ConstantDescs.CD_double, ConstantDescs.CD_double);
+
+    // Argumentos de los metodos generados, despues de this
+    private static final int INDEX = 1;
+    private static final int ARGUMENT = 2;
+    private static final int ANTECEDENTS = 3;
+    private static final int SUPPORT_ANTECEDENTS = 1;
+
+    private RuleCompiler() {
+    }
+
+    // Ubicar los valores en el intervalo [0, 1]; las clases generadas lo llaman desde el mismo paquete
+    static double clamp(double value) {
+        if (value > 1) {
+            return 1.0;
+        } else if (value < 0) {
+            return 0.0;
+        }
+        return value;
+    }
+
+    /**
+     * Devuelve la clase especializada de una regla, generandola solo si no
+     * hay ya una para el mismo cuerpo, valores y operadores de soporte
+     *
+     * @param rule Regla a especializar
+     * @param operators Funcion de soporte de cada atributo
+     * @return Instancia de la clase generada, que no guarda estado y puede
+     * compartirse entre hilos
+     */
+    static CompiledRule compile(Rule rule, DoubleBinaryOperator[] operators) {
+        Key key = Key.of(rule, operators);
+        SoftReference<CompiledRule> cached = CACHE.get(key);
+        CompiledRule compiled = cached != null ? cached.get() : null;
+
+        if (compiled == null) {
+            compiled = generate(rule, operators);
+            CACHE.put(key, new SoftReference<>(compiled));
+        }
+        return compiled;
+    }
+
+    private static CompiledRule generate(Rule rule, DoubleBinaryOperator[] operators) {
+        byte[] bytes = ClassFile.of().build(CD_GENERATED, clb -> clb
+                .withFlags(ClassFile.ACC_FINAL | ClassFile.ACC_SYNTHETIC)
+                .withSuperclass(ConstantDescs.CD_Object)
+                .withInterfaceSymbols(CD_COMPILED_RULE)
+                .withMethodBody(ConstantDescs.INIT_NAME, ConstantDescs.MTD_void, ClassFile.ACC_PUBLIC, cob -> cob
+                        .aload(0)
+                        .invokespecial(ConstantDescs.CD_Object, ConstantDescs.INIT_NAME, ConstantDescs.MTD_void)
+                        .return_())
+                .withMethodBody("body", MTD_BODY, ClassFile.ACC_PUBLIC, cob -> body(cob, rule))
+                .withMethodBody("support", MTD_SUPPORT, ClassFile.ACC_PUBLIC, cob -> support(cob, rule, operators)));
+
+        try {
+            // Las clases ocultas se descargan cuando se libera la instancia guardada
+            Class<?> generated = LOOKUP.defineHiddenClass(bytes, true).lookupClass();
+            return (CompiledRule) generated.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reune los hechos de cada predicado del cuerpo, con la misma cuenta
+     * que la forma general: la regla se aplica si la cantidad total de
+     * hechos es la de antecedentes. Se termina en cuanto la supera
+     */
+    private static void body(CodeBuilder cob, Rule rule) {
+        int[] body = rule.getBodyIds();
+
+        cob.aload(ANTECEDENTS).invokeinterface(ConstantDescs.CD_List, "clear", ConstantDescs.MTD_void);
+
+        for (int j = 0; j < body.length; j++) {
+            cob.aload(ANTECEDENTS)
+                    .aload(INDEX)
+                    .loadConstant(body[j])
+                    .iload(ARGUMENT)
+                    .invokeinterface(CD_FACT_INDEX, "facts", MTD_FACTS)
+                    .invokeinterface(ConstantDescs.CD_List, "addAll", MTD_ADD_ALL)
+                    .pop();
+
+            if (j < body.length - 1) {
+                cob.aload(ANTECEDENTS)
+                        .invokeinterface(ConstantDescs.CD_List, "size", MTD_SIZE)
+                        .loadConstant(body.length)
+                        .ifThen(Opcode.IF_ICMPGT, b -> b.iconst_0().ireturn());
+            }
+        }
+
+        cob.aload(ANTECEDENTS)
+                .invokeinterface(ConstantDescs.CD_List, "size", MTD_SIZE)
+                .loadConstant(body.length)
+                .ifThen(Opcode.IF_ICMPEQ, b -> b.iconst_1().ireturn())
+                .iconst_0()
+                .ireturn();
+    }
+
+    /**
+     * Calcula el soporte de cada atributo como una unica expresion, sin
+     * ciclos. La cantidad de atributos es la del primer antecedente, como
+     * en la forma general
+     */
+    private static void support(CodeBuilder cob, Rule rule, DoubleBinaryOperator[] operators) {
+        int length = rule.getBodyIds().length;
+        int width = Math.min(operators.length, rule.getAttributes().length);
+
+        for (int i = 0; i < width; i++) {
+            if (!(operators[i] instanceof StandardOperator)) {
+                cob.aconst_null().areturn();
+                return;
+            }
+        }
+
+        if (length == 0) {
+            cob.aconst_null().areturn();
+            return;
+        }
+
+        // Solo se especializa la cantidad de antecedentes del cuerpo
+        cob.aload(SUPPORT_ANTECEDENTS)
+                .invokeinterface(ConstantDescs.CD_List, "size", MTD_SIZE)
+                .loadConstant(length)
+                .ifThen(Opcode.IF_ICMPNE, b -> b.aconst_null().areturn());
+
+        // Atributos de cada antecedente en su posicion
+        int[] antecedents = new int[length];
+
+        for (int j = 0; j < length; j++) {
+            antecedents[j] = cob.allocateLocal(TypeKind.REFERENCE);
+            cob.aload(SUPPORT_ANTECEDENTS)
+                    .loadConstant(j)
+                    .invokeinterface(ConstantDescs.CD_List, "get", MTD_GET)
+                    .checkcast(CD_FACT)
+                    .invokevirtual(CD_FACT, "getAttributes", MTD_ATTRIBUTES)
+                    .astore(antecedents[j]);
+        }
+
+        int attributes = cob.allocateLocal(TypeKind.INT);
+        int result = cob.allocateLocal(TypeKind.REFERENCE);
+        int x = cob.allocateLocal(TypeKind.DOUBLE);
+        int y = cob.allocateLocal(TypeKind.DOUBLE);
+
+        cob.aload(antecedents[0])
+                .arraylength()
+                .istore(attributes)
+                .iload(attributes)
+                .loadConstant(width)
+                .ifThen(Opcode.IF_ICMPGT, b -> b.aconst_null().areturn())
+                .iload(attributes)
+                .newarray(TypeKind.DOUBLE)
+                .astore(result);
+
+        for (int i = 0; i < width; i++) {
+            StandardOperator operator = (StandardOperator) operators[i];
+
+            cob.iload(attributes)
+                    .loadConstant(i)
+                    .ifThen(Opcode.IF_ICMPLE, b -> b.aload(result).areturn());
+
+            // El soporte parte de cero
+            cob.aload(result).loadConstant(i).dconst_0();
+
+            for (int j = 0; j < length; j++) {
+                cob.aload(antecedents[j]).loadConstant(i).daload();
+                apply(cob, operator, x, y);
+            }
+
+            cob.loadConstant(rule.getAttributes()[i]);
+            apply(cob, operator, x, y);
+            cob.invokestatic(CD_RULE_COMPILER, "clamp", MTD_CLAMP).dastore();
+        }
+
+        cob.aload(result).areturn();
+    }
+
+    /**
+     * Aplica un operador a los dos valores de la pila, con las mismas
+     * operaciones que StandardOperator
+     */
+    private static void apply(CodeBuilder cob, StandardOperator operator, int x, int y) {
+        switch (operator) {
+            case ADD -> cob.dadd();
+            case MULTIPLY -> cob.dmul();
+            case SUBTRACT -> cob.dsub();
+            case MAX -> cob.invokestatic(CD_MATH, "max", MTD_OPERATOR);
+            case MIN -> cob.invokestatic(CD_MATH, "min", MTD_OPERATOR);
+            case PROBABILISTIC_SUM -> cob.dstore(y)
+                    .dstore(x)
+                    .dload(x)
+                    .dload(y)
+                    .dadd()
+                    .dload(x)
+                    .dload(y)
+                    .dmul()
+                    .dsub();
+        }
+    }
+
+    /**
+     * Lo que determina el codigo generado: los predicados del cuerpo, los
+     * valores de la regla y el operador estandar de cada atributo, o null
+     * si la funcion se evalua con exp4j. La cabeza no interviene
+     */
+    private record Key(List<Integer> body, List<Double> attributes, List<StandardOperator> operators) {
+
+        static Key of(Rule rule, DoubleBinaryOperator[] operators) {
+            int width = Math.min(operators.length, rule.getAttributes().length);
+            List<StandardOperator> standard = new ArrayList<>(width);
+
+            for (int i = 0; i < width; i++) {
+                standard.add(operators[i] instanceof StandardOperator operator ? operator : null);
+            }
+            return new Key(Arrays.stream(rule.getBodyIds()).boxed().toList(),
+                    Arrays.stream(rule.getAttributes()).boxed().toList(), standard);
+        }
+    }
+}
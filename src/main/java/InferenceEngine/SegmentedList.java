@@ -0,0 +1,99 @@
+package InferenceEngine;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Lista de solo lectura formada por segmentos identificados por una clave,
+ * en el orden en que se agregaron. Los segmentos no se copian: agregar o
+ * quitar uno no recorre los demas, por lo que actualizar el grafo de un
+ * grupo de hechos cuesta lo mismo que su grafo. Los segmentos no deben
+ * cambiar mientras forman parte de la lista
+ *
+ * @param <E> Tipo de los elementos
+ */
+class SegmentedList<E> extends AbstractList<E> {
+
+    private final Map<Integer, List<E>> segments;
+    private int size;
+    // Elementos en orden, solo si se accedio por posicion desde el ultimo cambio
+    private List<E> flat;
+
+    SegmentedList() {
+        this.segments = new LinkedHashMap<>();
+    }
+
+    // Agrega el segmento de una clave al final, reemplazando el anterior
+    void putSegment(int key, List<E> segment) {
+        removeSegment(key);
+
+        if (!segment.isEmpty()) {
+            segments.put(key, segment);
+            size += segment.size();
+            flat = null;
+        }
+    }
+
+    // Quita el segmento de una clave
+    void removeSegment(int key) {
+        List<E> segment = segments.remove(key);
+
+        if (segment != null) {
+            size -= segment.size();
+            flat = null;
+        }
+    }
+
+    @Override
+    public void clear() {
+        segments.clear();
+        size = 0;
+        flat = null;
+    }
+
+    @Override
+    public E get(int index) {
+        if (flat == null) {
+            List<E> elements = new ArrayList<>(size);
+            segments.values().forEach(elements::addAll);
+            flat = Collections.unmodifiableList(elements);
+        }
+        return flat.get(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<List<E>> pending = segments.values().iterator();
+
+        return new Iterator<>() {
+            private Iterator<E> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && pending.hasNext()) {
+                    current = pending.next().iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package InferenceEngine;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Operadores estandar que se evaluan directamente, sin el interprete de
+ * expresiones y sin reservar memoria, reconocidos a partir del texto de
+ * una funcion. Cada operador da exactamente el mismo resultado que
+ * exp4j al evaluar la expresion equivalente
+ */
+enum StandardOperator implements DoubleBinaryOperator {
+
+    ADD {                   // X + Y
+        @Override
+        public double applyAsDouble(double x, double y) {
+            return x + y;
+        }
+    },
+    MULTIPLY {              // X * Y
+        @Override
+        public double applyAsDouble(double x, double y) {
+            return x * y;
+        }
+    },
+    SUBTRACT {              // X - Y
+        @Override
+        public double applyAsDouble(double x, double y) {
+            return x - y;
+        }
+    },
+    MAX {                   // max(X, Y)
+        @Override
+        public double applyAsDouble(double x, double y) {
+            return Math.max(x, y);
+        }
+    },
+    MIN {                   // min(X, Y)
+        @Override
+        public double applyAsDouble(double x, double y) {
+            return Math.min(x, y);
+        }
+    },
+    PROBABILISTIC_SUM {     // X + Y - X * Y
+        @Override
+        public double applyAsDouble(double x, double y) {
+            return x + y - x * y;
+        }
+    };
+
+    /**
+     * Reconoce la forma estandar de una funcion, sin importar los espacios
+     * ni el orden de los operandos de las operaciones conmutativas
+     *
+     * @param function Funcion en X e Y
+     * @return Operador equivalente, o null si la funcion no es estandar
+     */
+    static StandardOperator recognize(String function) {
+        return switch (function.replaceAll("\\s+", "")) {
+            case "X+Y", "Y+X" -> ADD;
+            case "X*Y", "Y*X" -> MULTIPLY;
+            case "X-Y" -> SUBTRACT;
+            case "max(X,Y)", "max(Y,X)" -> MAX;
+            case "min(X,Y)", "min(Y,X)" -> MIN;
+            case "X+Y-X*Y", "X+Y-Y*X", "Y+X-X*Y", "Y+X-Y*X" -> PROBABILISTIC_SUM;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,165 @@
+package InferenceEngine;
+
+import KnowledgePieces.Rule;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Clase que construye el grafo de dependencias entre predicados a partir
+ * de las reglas, calcula sus componentes fuertemente conexas y las ordena
+ * topologicamente. Cada componente es un estrato: las reglas de un estrato
+ * solo dependen de predicados de estratos anteriores o del mismo estrato
+ */
+public class Stratification {
+
+    // Predicados de los que depende cada predicado (cabeza -> cuerpo)
+    private final Map<Integer, Set<Integer>> dependencies;
+    // Predicados que dependen de cada predicado (cuerpo -> cabeza)
+    private final Map<Integer, Set<Integer>> dependents;
+    // Reglas (posiciones en la lista de reglas) de cada estrato, en orden topologico
+    private final List<BitSet> strata;
+    // Estratos que dependen de si mismos y deben iterarse hasta un punto fijo
+    private final BitSet recursive;
+
+    public Stratification(List<Rule> rules) {
+        this.dependencies = new HashMap<>();
+        this.dependents = new HashMap<>();
+        this.strata = new ArrayList<>();
+        this.recursive = new BitSet();
+
+        for (Rule rule : rules) {
+            for (int bodypart : rule.getBodyIds()) {
+                dependencies.computeIfAbsent(rule.getHeadId(), head -> new LinkedHashSet<>()).add(bodypart);
+                dependents.computeIfAbsent(bodypart, body -> new LinkedHashSet<>()).add(rule.getHeadId());
+            }
+        }
+
+        List<List<Integer>> components = components();
+        Map<Integer, Integer> componentOf = new HashMap<>();
+
+        for (int c = 0; c < components.size(); c++) {
+            strata.add(new BitSet(rules.size()));
+
+            for (int predicate : components.get(c)) {
+                componentOf.put(predicate, c);
+            }
+        }
+
+        // Se ubica cada regla en el estrato de su cabeza
+        for (int r = 0; r < rules.size(); r++) {
+            Rule rule = rules.get(r);
+            int component = componentOf.get(rule.getHeadId());
+            strata.get(component).set(r);
+
+            for (int bodypart : rule.getBodyIds()) {
+                if (componentOf.get(bodypart) == component) {
+                    recursive.set(component);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcula las componentes fuertemente conexas con el algoritmo de
+     * Tarjan, sin recursion, de modo que cadenas largas de reglas no
+     * desborden la pila
+     *
+     * @return Componentes en orden topologico: cada componente aparece
+     * despues de las componentes de las que depende
+     */
+    private List<List<Integer>> components() {
+        Map<Integer, Integer> index = new HashMap<>();
+        Map<Integer, Integer> lowLink = new HashMap<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        Set<Integer> onStack = new HashSet<>();
+        List<List<Integer>> components = new ArrayList<>();
+        Map<Integer, int[]> successors = new HashMap<>();
+
+        for (Map.Entry<Integer, Set<Integer>> entry : dependencies.entrySet()) {
+            successors.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        Set<Integer> predicates = new LinkedHashSet<>(dependencies.keySet());
+        predicates.addAll(dependents.keySet());
+
+        for (int root : predicates) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+
+            // Pila de recorrido: predicado y posicion del proximo sucesor a visitar
+            Deque<int[]> work = new ArrayDeque<>();
+            work.push(new int[] {root, 0});
+
+            while (!work.isEmpty()) {
+                int[] frame = work.peek();
+                int predicate = frame[0];
+
+                if (!index.containsKey(predicate)) {
+                    index.put(predicate, index.size());
+                    lowLink.put(predicate, index.get(predicate));
+                    stack.push(predicate);
+                    onStack.add(predicate);
+                }
+
+                int[] next = successors.getOrDefault(predicate, new int[0]);
+
+                if (frame[1] < next.length) {
+                    int successor = next[frame[1]++];
+
+                    if (!index.containsKey(successor)) {
+                        work.push(new int[] {successor, 0});
+                    } else if (onStack.contains(successor)) {
+                        lowLink.put(predicate, Math.min(lowLink.get(predicate), index.get(successor)));
+                    }
+                    continue;
+                }
+
+                // Se visitaron todos los sucesores del predicado
+                work.pop();
+
+                if (!work.isEmpty()) {
+                    int parent = work.peek()[0];
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(predicate)));
+                }
+
+                if (lowLink.get(predicate).equals(index.get(predicate))) {
+                    List<Integer> component = new ArrayList<>();
+                    int member;
+
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while (member != predicate);
+
+                    components.add(component);
+                }
+            }
+        }
+
+        return components;
+    }
+
+    public List<BitSet> getStrata() {
+        return strata;
+    }
+
+    public boolean isRecursive(int stratum) {
+        return recursive.get(stratum);
+    }
+
+    // Predicados de los que depende directamente un predicado
+    public Set<Integer> getDependencies(int predicate) {
+        return dependencies.getOrDefault(predicate, Collections.emptySet());
+    }
+}
@@ -0,0 +1,89 @@
+package InferenceEngine;
+
+import KnowledgePieces.Fact;
+import KnowledgePieces.KnowledgePiece;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de evaluar varias configuraciones de funciones sobre un mismo
+ * grafo argumentativo. El grafo se genera una unica vez y, para cada
+ * configuracion, se guardan los atributos y los atributos debilitados de
+ * cada hecho
+ */
+public final class SweepResult {
+
+    private final ArgumentativeGraph graph;
+    // Posicion de cada hecho en los arreglos de valores
+    private final Map<Fact, Integer> positions;
+    // Valores de cada hecho, por configuracion
+    private final double[][][] attributes;
+    private final double[][][] deltaAttributes;
+
+    SweepResult(ArgumentativeGraph graph, Map<Fact, Integer> positions,
+            double[][][] attributes, double[][][] deltaAttributes) {
+        this.graph = graph;
+        this.positions = positions;
+        this.attributes = attributes;
+        this.deltaAttributes = deltaAttributes;
+    }
+
+    // Cantidad de configuraciones evaluadas
+    public int size() {
+        return attributes.length;
+    }
+
+    // Grafo compartido por todas las configuraciones
+    public ArgumentativeGraph getGraph() {
+        return graph;
+    }
+
+    public double[] getAttributes(int configuration, Fact fact) {
+        return attributes[configuration][position(fact)];
+    }
+
+    public double[] getDeltaAttributes(int configuration, Fact fact) {
+        return deltaAttributes[configuration][position(fact)];
+    }
+
+    private int position(Fact fact) {
+        Integer position = positions.get(fact);
+
+        if (position == null) {
+            throw new IllegalArgumentException("Fact " + fact + " is not part of the sweep");
+        }
+
+        return position;
+    }
+
+    /**
+     * Asigna a los hechos del grafo los valores de una configuracion, para
+     * mostrarlo con las vistas que trabajan con ArgumentativeGraph
+     *
+     * @param configuration Posicion de la configuracion
+     * @return Grafo con los valores de la configuracion
+     */
+    public ArgumentativeGraph apply(int configuration) {
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : graph.edges().entrySet()) {
+            if (entry.getKey() instanceof Fact fact) {
+                assign(configuration, fact);
+            }
+
+            for (Fact target : entry.getValue()) {
+                assign(configuration, target);
+            }
+        }
+
+        for (Pair pair : graph.conflictiveNodes()) {
+            assign(configuration, pair.first());
+            assign(configuration, pair.second());
+        }
+
+        return graph;
+    }
+
+    private void assign(int configuration, Fact fact) {
+        fact.setAttributes(getAttributes(configuration, fact));
+        fact.setDeltaAttributes(getDeltaAttributes(configuration, fact));
+    }
+}
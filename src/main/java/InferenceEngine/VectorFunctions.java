@@ -0,0 +1,232 @@
+package InferenceEngine;
+
+import KnowledgePieces.KnowledgePiece;
+import java.util.Arrays;
+import java.util.List;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Clase que evalua las funciones estandar con la API de vectores,
+ * operando sobre varios valores a la vez. La agregacion procesa los
+ * atributos de un hecho de a un vector, solo si tiene al menos
+ * AGGREGATION_WIDTH atributos, y los ataques procesan cada atributo de
+ * muchos pares en conflicto a la vez. El soporte no se evalua aqui: con
+ * pocos atributos por hecho es mas rapido el codigo escalar de las clases
+ * que genera RuleCompiler.
+ * Solo se utiliza si la JVM se inicio con --add-modules
+ * jdk.incubator.vector; sin el modulo CompiledFunctions no carga esta
+ * clase y todas las funciones se evaluan con el codigo escalar
+ */
+final class VectorFunctions {
+    
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    // Atributos a partir de los cuales agregar un hecho con vectores es mas rapido que el codigo escalar
+    static final int AGGREGATION_WIDTH = 4 * SPECIES.length();
+    
+    // Operador de cada atributo, con las columnas soporte, agregacion y conflicto
+    private final StandardOperator[][] operators;
+    // Operadores utilizados en cada columna
+    private final StandardOperator[][] columnOperators;
+    // Mascara de los atributos de cada porcion del vector que usan cada operador de la columna
+    private final VectorMask<Double>[][][] masks;
+    
+    @SuppressWarnings("unchecked")
+    VectorFunctions(StandardOperator[][] operators) {
+        int chunks = Math.max(1, (operators.length + SPECIES.length() - 1) / SPECIES.length());
+        // Atributos que utilizan cada operador en cada columna, completados hasta un multiplo del vector
+        boolean[][][] lanes = new boolean[3][StandardOperator.values().length][chunks * SPECIES.length()];
+        
+        this.operators = operators;
+        this.columnOperators = new StandardOperator[3][];
+        this.masks = new VectorMask[3][][];
+        
+        for (int k = 0; k < 3; k++) {
+            for (int i = 0; i < operators.length; i++) {
+                if (operators[i][k] != null) { // Las columnas con funciones no estandar no se vectorizan
+                    lanes[k][operators[i][k].ordinal()][i] = true;
+                }
+            }
+            
+            int column = k;
+            columnOperators[k] = Arrays.stream(StandardOperator.values())
+                    .filter(operator -> contains(lanes[column][operator.ordinal()]))
+                    .toArray(StandardOperator[]::new);
+            
+            // Las mascaras se crean una unica vez, no en cada evaluacion
+            masks[k] = new VectorMask[columnOperators[k].length][chunks];
+            
+            for (int o = 0; o < columnOperators[k].length; o++) {
+                for (int c = 0; c < chunks; c++) {
+                    masks[k][o][c] = VectorMask.fromArray(SPECIES, lanes[k][columnOperators[k][o].ordinal()], c * SPECIES.length());
+                }
+            }
+        }
+    }
+    
+    private static boolean contains(boolean[] values) {
+        for (boolean value : values) {
+            if (value) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Combina un valor acumulado con los atributos de varias piezas y
+     * finalmente con un ultimo arreglo de atributos, atributo por atributo,
+     * y ubica los resultados en el intervalo [0, 1]. Los atributos que no
+     * completan un vector se combinan con el codigo escalar
+     * 
+     * @param column Columna de funciones a utilizar
+     * @param accumulated Valor inicial de cada atributo, no se modifica
+     * @param pieces Piezas a combinar en orden
+     * @param last Ultimos atributos a combinar, o null si no hay
+     * @return Atributos resultantes
+     * @throws ArrayIndexOutOfBoundsException Igual que la evaluacion escalar,
+     * si hay mas atributos que funciones o a una pieza le faltan atributos
+     */
+    double[] fold(int column, double[] accumulated, List<? extends KnowledgePiece> pieces, double[] last) {
+        requireWidth(operators.length, accumulated.length);
+        
+        for (KnowledgePiece piece : pieces) {
+            requireWidth(piece.getAttributes().length, accumulated.length);
+        }
+        if (last != null) {
+            requireWidth(last.length, accumulated.length);
+        }
+        
+        double[] result = accumulated.clone();
+        int bound = SPECIES.loopBound(result.length);
+        
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector value = DoubleVector.fromArray(SPECIES, result, i);
+            
+            for (KnowledgePiece piece : pieces) {
+                value = apply(column, i, value, DoubleVector.fromArray(SPECIES, piece.getAttributes(), i));
+            }
+            
+            if (last != null) {
+                value = apply(column, i, value, DoubleVector.fromArray(SPECIES, last, i));
+            }
+            
+            clamp(value).intoArray(result, i);
+        }
+        
+        for (int i = bound; i < result.length; i++) {
+            for (KnowledgePiece piece : pieces) {
+                result[i] = operators[i][column].applyAsDouble(result[i], piece.getAttributes()[i]);
+            }
+            
+            if (last != null) {
+                result[i] = operators[i][column].applyAsDouble(result[i], last[i]);
+            }
+            
+            result[i] = result[i] > 1 ? 1.0 : result[i] < 0 ? 0.0 : result[i];
+        }
+        
+        return result;
+    }
+    
+    // Falla con el mismo error que el codigo escalar si faltan valores para alguno de los atributos
+    private static void requireWidth(int available, int width) {
+        if (available < width) {
+            throw new ArrayIndexOutOfBoundsException("Index " + available + " out of bounds for length " + available);
+        }
+    }
+    
+    /**
+     * Calcula los ataques en ambos sentidos de una porcion de los pares en
+     * conflicto, procesando cada atributo de varios pares a la vez
+     * 
+     * @return Falso si los pares no tienen todos la misma cantidad de
+     * atributos y deben calcularse de a uno
+     */
+    boolean attacks(List<Pair> pairs, double[][] attacks, int from, int to) {
+        int count = to - from;
+        
+        if (count == 0) {
+            return true;
+        }
+        
+        int attributes = pairs.get(from).first().getAttributes().length;
+        
+        for (int p = from; p < to; p++) {
+            if (pairs.get(p).first().getAttributes().length != attributes
+                    || pairs.get(p).second().getAttributes().length != attributes) {
+                return false;
+            }
+        }
+        
+        double[] first = new double[count];
+        double[] second = new double[count];
+        double[] forward = new double[count];
+        double[] backward = new double[count];
+        
+        for (int p = from; p < to; p++) {
+            attacks[2 * p] = new double[attributes];
+            attacks[2 * p + 1] = new double[attributes];
+        }
+        
+        for (int a = 0; a < attributes; a++) {
+            StandardOperator operator = operators[a][CompiledFunctions.CONFLICT];
+            
+            // Se copian los valores del atributo en arreglos contiguos
+            for (int p = from; p < to; p++) {
+                first[p - from] = pairs.get(p).first().getAttributes()[a];
+                second[p - from] = pairs.get(p).second().getAttributes()[a];
+            }
+            
+            for (int i = 0; i < count; i += SPECIES.length()) {
+                VectorMask<Double> range = SPECIES.indexInRange(i, count);
+                DoubleVector x = DoubleVector.fromArray(SPECIES, first, i, range);
+                DoubleVector y = DoubleVector.fromArray(SPECIES, second, i, range);
+                
+                clamp(apply(operator, x, y)).intoArray(forward, i, range);
+                clamp(apply(operator, y, x)).intoArray(backward, i, range);
+            }
+            
+            for (int p = from; p < to; p++) {
+                attacks[2 * p][a] = forward[p - from];
+                attacks[2 * p + 1][a] = backward[p - from];
+            }
+        }
+        
+        return true;
+    }
+    
+    // Aplica a cada atributo de un vector el operador que le corresponde en la columna
+    private DoubleVector apply(int column, int offset, DoubleVector x, DoubleVector y) {
+        StandardOperator[] columnOperators = this.columnOperators[column];
+        VectorMask<Double>[][] columnMasks = masks[column];
+        int chunk = offset / SPECIES.length();
+        DoubleVector result = apply(columnOperators[0], x, y);
+        
+        for (int o = 1; o < columnOperators.length; o++) {
+            result = result.blend(apply(columnOperators[o], x, y), columnMasks[o][chunk]);
+        }
+        
+        return result;
+    }
+    
+    private static DoubleVector apply(StandardOperator operator, DoubleVector x, DoubleVector y) {
+        return switch (operator) {
+            case ADD -> x.add(y);
+            case MULTIPLY -> x.mul(y);
+            case SUBTRACT -> x.sub(y);
+            case MAX -> x.max(y);
+            case MIN -> x.min(y);
+            case PROBABILISTIC_SUM -> x.add(y).sub(x.mul(y));
+        };
+    }
+    
+    // Ubica los valores en el intervalo [0, 1], igual que la evaluacion escalar
+    private static DoubleVector clamp(DoubleVector value) {
+        return value.blend(1.0, value.compare(VectorOperators.GT, 1.0))
+                .blend(0.0, value.compare(VectorOperators.LT, 0.0));
+    }
+}
@@ -1,42 +1,106 @@
 package KnowledgePieces;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class Fact extends KnowledgePiece{
     
-    private final String name;
-    private final String argument;
-    private Double[] deltaAttributes;
+    // Se obtienen de la tabla de simbolos la primera vez que se usan
+    private String name;
+    private String argument;
+    private final int nameId;
+    private final int argumentId;
+    private final int atomId;
+    private final int[] argumentIds;
+    private double[] deltaAttributes;
+    
+    /**
+     * Constructor principal
+     * 
+     * @param name Nombre del predicado
+     * @param argument Argumento, o argumentos separados por comas si el
+     * predicado relaciona varios
+     * @param attributes Valores de los atributos
+     */
+    public Fact(String name, String argument, double[] attributes) {
+        this(SymbolTable.intern(name), SymbolTable.intern(canonical(argument)), attributes);
+    }
     
-    public Fact(String name, String argument, Double[] attributes) {
-        this.name = name;
-        this.argument = argument;
+    public Fact(int nameId, int argumentId, double[] attributes) {
+        this.nameId = nameId;
+        this.argumentId = argumentId;
+        this.atomId = SymbolTable.atom(nameId, argumentId);
+        this.argumentIds = SymbolTable.terms(argumentId);
         this.attributes = attributes;
         this.deltaAttributes = attributes;
     }
 
     public String getName() {
+        if (name == null) {
+            name = SymbolTable.symbol(nameId);
+        }
         return name;
     }
 
     public String getArgument() {
+        if (argument == null) {
+            argument = SymbolTable.symbol(argumentId);
+        }
         return argument;
     }
 
-    public Double[] getDeltaAttributes() {
+    public int getNameId() {
+        return nameId;
+    }
+
+    public int getArgumentId() {
+        return argumentId;
+    }
+    
+    // Argumentos del predicado, de a uno
+    public List<String> getArguments() {
+        return Arrays.stream(argumentIds).mapToObj(SymbolTable::symbol).toList();
+    }
+    
+    // Identificadores de los argumentos del predicado, el arreglo no debe modificarse
+    public int[] getArgumentIds() {
+        return argumentIds;
+    }
+    
+    public int getArity() {
+        return argumentIds.length;
+    }
+
+    // Identificador compartido por todos los hechos con el mismo nombre y argumento
+    public int getAtomId() {
+        return atomId;
+    }
+
+    public double[] getDeltaAttributes() {
         return deltaAttributes;
     }
     
-    public void setAttributes(Double[] attributes) { 
+    public void setAttributes(double[] attributes) { 
         this.attributes = attributes;
         this.deltaAttributes = attributes; 
     }
     
-    public void setDeltaAttributes(Double[] attributes) { 
+    public void setDeltaAttributes(double[] attributes) { 
         this.deltaAttributes = attributes; 
     }
     
+    // Quita los espacios alrededor de cada argumento de una lista separada por comas
+    private static String canonical(String argument) {
+        if (argument.indexOf(',') < 0) {
+            return argument;
+        }
+        
+        return String.join(",", Arrays.stream(argument.split(",")).map(String::trim).toList());
+    }
+    
     @Override
     public String toString() {
-        return name + '(' + argument + ").";
+        return getName() + '(' + getArgument() + ").";
     }
     
 }
\ No newline at end of file
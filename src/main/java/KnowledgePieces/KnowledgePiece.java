@@ -2,10 +2,14 @@ package KnowledgePieces;
 
 public abstract class KnowledgePiece {
 
-    Double[] attributes;
+    double[] attributes;
+    // Numero del nodo mas uno en la escritura del grafo en curso, o cero si aun no se escribio
+    private int exportId;
     
     @Override
     public abstract String toString();
-    public Double[] getAttributes() { return attributes; }
+    public double[] getAttributes() { return attributes; }
+    public int getExportId() { return exportId; }
+    public void setExportId(int exportId) { this.exportId = exportId; }
     
 }
\ No newline at end of file
@@ -0,0 +1,460 @@
+package KnowledgePieces;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Clase que carga un programa desde un archivo, con el mismo formato que
+ * ProgramParser, sin copiar el texto completo en memoria. El archivo se
+ * mapea en memoria y se divide en porciones que terminan en un fin de
+ * linea; cada porcion se recorre una unica vez con un analizador escrito a
+ * mano, sin expresiones regulares, que crea los hechos y reglas
+ * directamente desde los bytes. Las porciones se interpretan en paralelo
+ * y sus resultados se unen en el orden del archivo
+ */
+public class ProgramLoader {
+
+    // Tamaño minimo de una porcion, para no repartir archivos chicos
+    private static final long MIN_CHUNK = 1 << 20;
+    // Tamaño maximo de una porcion, que debe poder mapearse de una vez
+    private static final long MAX_CHUNK = 1 << 30;
+    // Potencias de diez que se representan exactamente como double
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final List<Fact> facts;
+    private final List<Rule> rules;
+
+    public ProgramLoader() {
+        this.facts = new ArrayList<>();
+        this.rules = new ArrayList<>();
+    }
+
+    /**
+     * Carga un programa usando todos los procesadores disponibles
+     *
+     * @param file Archivo del programa
+     */
+    public void load(Path file) throws IOException {
+        load(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Carga un programa, reemplazando los hechos y reglas de un programa
+     * anterior. Las lineas con atributos invalidos se informan y se
+     * ignoran, como en ProgramParser
+     *
+     * @param file Archivo del programa
+     * @param parallelism Cantidad de hilos a utilizar
+     */
+    public void load(Path file, int parallelism) throws IOException {
+        facts.clear();
+        rules.clear();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunks(channel, parallelism);
+            List<Callable<Lexer>> tasks = new ArrayList<>();
+
+            for (int c = 0; c + 1 < bounds.length; c++) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, bounds[c], bounds[c + 1] - bounds[c]);
+
+                tasks.add(() -> {
+                    Lexer lexer = new Lexer(buffer);
+                    lexer.parse();
+                    return lexer;
+                });
+            }
+
+            try (ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism))) {
+                // Se unen las porciones en el orden del archivo, y se informa el primer error
+                for (Future<Lexer> result : pool.invokeAll(tasks)) {
+                    Lexer lexer = result.get();
+
+                    if (lexer.error != null) {
+                        throw lexer.error;
+                    }
+                    facts.addAll(lexer.facts);
+                    rules.addAll(lexer.rules);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Loading interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Loading failed", e.getCause());
+            }
+        }
+    }
+
+    public List<Fact> getFacts() {
+        return facts;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Divide el archivo en porciones de tamaño similar, moviendo cada
+     * limite al comienzo de la linea siguiente
+     *
+     * @return Posiciones de comienzo de cada porcion, y el tamaño del archivo al final
+     */
+    private static long[] chunks(FileChannel channel, int parallelism) throws IOException {
+        long size = channel.size();
+        int count = (int) Math.max(Math.min(parallelism, size / MIN_CHUNK), (size + MAX_CHUNK - 1) / MAX_CHUNK);
+        count = Math.max(count, 1);
+        long[] bounds = new long[count + 1];
+        ByteBuffer window = ByteBuffer.allocate(4096);
+
+        for (int c = 1; c < count; c++) {
+            long position = Math.max(bounds[c - 1], c * (size / count));
+            bounds[c] = nextLine(channel, position, window);
+        }
+        bounds[count] = size;
+
+        return bounds;
+    }
+
+    // Posicion siguiente al primer fin de linea desde una posicion, o el final del archivo
+    private static long nextLine(FileChannel channel, long position, ByteBuffer window) throws IOException {
+        while (true) {
+            window.clear();
+            int read = channel.read(window, position);
+
+            if (read <= 0) {
+                return channel.size();
+            }
+
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Analizador de una porcion del archivo. Recorre los bytes linea por
+     * linea y avanza una unica vez sobre cada una
+     */
+    private static final class Lexer {
+
+        private final ByteBuffer buffer;
+        private final List<Fact> facts;
+        private final List<Rule> rules;
+        // Primer error de formato de la porcion, o null si no hubo errores
+        private IllegalArgumentException error;
+        // Bytes de un nombre o argumento, antes de convertirlos en texto
+        private byte[] scratch;
+        // Posicion actual y fin de la linea actual
+        private int position;
+        private int end;
+
+        Lexer(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.facts = new ArrayList<>();
+            this.rules = new ArrayList<>();
+            this.scratch = new byte[64];
+        }
+
+        void parse() {
+            int limit = buffer.limit();
+            int start = 0;
+
+            while (start < limit) {
+                int lineEnd = start;
+
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+
+                try {
+                    line(start, lineEnd);
+                } catch (IllegalArgumentException e) {
+                    error = e;
+                    return;
+                }
+                start = lineEnd + 1;
+            }
+        }
+
+        // Procesar una linea: un hecho, una regla o una linea vacia
+        private void line(int start, int lineEnd) {
+            position = start;
+            end = lineEnd;
+            skipSpaces();
+
+            if (position == end) {
+                return;
+            }
+
+            int nameStart = position;
+            String name = name();
+            String arguments = arguments();
+            skipSpaces();
+
+            try {
+                if (position + 1 < end && buffer.get(position) == ':' && buffer.get(position + 1) == '-') {
+                    position += 2;
+                    String head = arguments == null ? name : name + '(' + arguments + ')';
+                    List<String> body = body();
+                    rules.add(new Rule(head, body, attributes()));
+                } else {
+                    if (arguments == null) {
+                        throw error(nameStart, "Expected arguments");
+                    }
+                    expect('.');
+                    facts.add(new Fact(SymbolTable.intern(name), SymbolTable.intern(arguments), attributes()));
+                }
+            } catch (NumberFormatException e) {
+                // Manejar el error si los atributos no son números válidos
+                System.err.println("Error parsing attributes in line: " + text(start, lineEnd).trim());
+            }
+        }
+
+        // Procesar el cuerpo de una regla, hasta el punto final
+        private List<String> body() {
+            List<String> body = new ArrayList<>();
+
+            while (true) {
+                skipSpaces();
+                String name = name();
+                String arguments = arguments();
+                body.add(arguments == null ? name : name + '(' + arguments + ')');
+                skipSpaces();
+
+                if (position < end && buffer.get(position) == ',') {
+                    position++;
+                } else {
+                    expect('.');
+                    return body;
+                }
+            }
+        }
+
+        // Nombre de un predicado, hasta el primer separador
+        private String name() {
+            int start = position;
+
+            while (position < end && !isSeparator(buffer.get(position))) {
+                position++;
+            }
+
+            if (position == start) {
+                throw error(start, "Expected a predicate name");
+            }
+
+            return text(start, position);
+        }
+
+        /**
+         * Argumentos entre parentesis, sin espacios alrededor de cada uno y
+         * separados por comas
+         *
+         * @return Argumentos, o null si el predicado no tiene parentesis
+         */
+        private String arguments() {
+            skipSpaces();
+
+            if (position == end || buffer.get(position) != '(') {
+                return null;
+            }
+
+            int length = 0;
+            position++;
+
+            while (true) {
+                skipSpaces();
+                int start = position;
+
+                while (position < end && buffer.get(position) != ',' && buffer.get(position) != ')') {
+                    position++;
+                }
+
+                if (position == end) {
+                    throw error(start, "Expected )");
+                }
+
+                int termEnd = position;
+
+                while (termEnd > start && isSpace(buffer.get(termEnd - 1))) {
+                    termEnd--;
+                }
+
+                length = append(length, start, termEnd);
+
+                if (buffer.get(position++) == ')') {
+                    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+                }
+                length = append(length, (byte) ',');
+            }
+        }
+
+        /**
+         * Procesar los atributos, separados por comas y opcionalmente entre
+         * llaves. Despues de los atributos solo puede haber espacios hasta
+         * el fin de la linea; si hay otro texto la linea se informa y se
+         * ignora, igual que en ProgramParser
+         */
+        private double[] attributes() {
+            double[] values = new double[4];
+            int count = 0;
+
+            skipSpaces();
+
+            if (position < end && buffer.get(position) == '{') {
+                position++;
+            }
+
+            while (true) {
+                skipSpaces();
+
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, 2 * count);
+                }
+                values[count++] = number();
+                skipSpaces();
+
+                if (position < end && buffer.get(position) == ',') {
+                    position++;
+                } else {
+                    break;
+                }
+            }
+
+            if (position < end && buffer.get(position) == '}') {
+                position++;
+                skipSpaces();
+            }
+
+            if (position < end) {
+                throw new NumberFormatException("Unexpected text: " + text(position, end));
+            }
+
+            return Arrays.copyOf(values, count);
+        }
+
+        /**
+         * Convierte un numero decimal sin crear texto intermedio. Los
+         * numeros con hasta 15 digitos y sin exponente se calculan como un
+         * entero dividido por una potencia de diez, ambos exactos, por lo
+         * que el resultado es el mismo que el de Double.parseDouble; el
+         * resto se convierte con Double.parseDouble
+         */
+        private double number() {
+            int start = position;
+
+            while (position < end && !isSpace(buffer.get(position))
+                    && buffer.get(position) != ',' && buffer.get(position) != '}') {
+                position++;
+            }
+
+            int i = start;
+            boolean negative = i < position && buffer.get(i) == '-';
+
+            if (i < position && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                i++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int scale = -1;
+
+            for (; i < position; i++) {
+                byte b = buffer.get(i);
+
+                if (b >= '0' && b <= '9' && digits < 15) {
+                    mantissa = 10 * mantissa + (b - '0');
+                    digits++;
+                    scale += scale >= 0 ? 1 : 0;
+                } else if (b == '.' && scale < 0) {
+                    scale = 0;
+                } else {
+                    return Double.parseDouble(text(start, position));
+                }
+            }
+
+            if (digits == 0) {
+                throw new NumberFormatException("Invalid number: " + text(start, position));
+            }
+
+            double value = mantissa / POWERS_OF_TEN[Math.max(scale, 0)];
+            return negative ? -value : value;
+        }
+
+        private void expect(char expected) {
+            skipSpaces();
+
+            if (position == end || buffer.get(position) != expected) {
+                throw error(position, "Expected " + expected);
+            }
+            position++;
+        }
+
+        private void skipSpaces() {
+            while (position < end && isSpace(buffer.get(position))) {
+                position++;
+            }
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t' || b == '\r';
+        }
+
+        private static boolean isSeparator(byte b) {
+            return isSpace(b) || b == '(' || b == ')' || b == ',' || b == '.' || b == ':' || b == '{';
+        }
+
+        // Copia bytes de la porcion al final de los bytes acumulados
+        private int append(int length, int from, int to) {
+            for (int i = from; i < to; i++) {
+                length = append(length, buffer.get(i));
+            }
+            return length;
+        }
+
+        private int append(int length, byte b) {
+            if (length == scratch.length) {
+                scratch = Arrays.copyOf(scratch, 2 * length);
+            }
+            scratch[length] = b;
+            return length + 1;
+        }
+
+        private String text(int from, int to) {
+            byte[] bytes = new byte[to - from];
+            buffer.get(from, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private IllegalArgumentException error(int at, String message) {
+            int lineStart = at;
+
+            while (lineStart > 0 && buffer.get(lineStart - 1) != '\n') {
+                lineStart--;
+            }
+
+            return new IllegalArgumentException(message + " in line: " + text(lineStart, end).trim());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package KnowledgePieces;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase que interpreta el texto de un programa: una linea por hecho, como
+ * "p(a). {0.5, 0.3}", o por regla, como "q(X) :- p(X), r(X). {0.8, 0.1}".
+ * Tambien interpreta la matriz de funciones, con una linea por atributo y
+ * las funciones de soporte, agregacion y conflicto separadas por ";"
+ */
+public class ProgramParser {
+
+    private final List<Fact> facts;
+    private final List<Rule> rules;
+
+    public ProgramParser() {
+        this.facts = new ArrayList<>();
+        this.rules = new ArrayList<>();
+    }
+
+    /**
+     * Interpreta un programa completo, reemplazando los hechos y reglas
+     * de un programa anterior. Las lineas con atributos invalidos se
+     * informan y se ignoran
+     *
+     * @param program Texto del programa
+     */
+    public void parse(String program) {
+        // Limpiar hechos y reglas
+        facts.clear();
+        rules.clear();
+
+        for (String line : program.split("\n")) {
+
+            line = line.trim();
+
+            if (line.isEmpty()) continue;
+
+            if (line.contains(":-")) {
+                processRule(line);
+            } else {
+                processFact(line);
+            }
+
+        }
+    }
+
+    public List<Fact> getFacts() {
+        return facts;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    // Procesar las reglas
+    private void processRule(String line) {
+
+        // Separar la regla de los atributos
+        String[] mainParts = line.split("\\. ");
+
+        String ruleData = mainParts[0];
+        String attributesStr = mainParts[1].replaceAll("[{}\\s]", "");
+
+        // Separar cabeza y cuerpo
+        String[] ruleParts = ruleData.split(":-");
+
+        // Procesar la cabeza, con sus argumentos
+        String head = ruleParts[0].trim();
+
+        // Procesar el cuerpo
+        String bodyPart = ruleParts[1].trim();
+        ArrayList<String> body = new ArrayList<>();
+
+        // Dividir el cuerpo en predicados individuales, sin separar los argumentos de cada uno
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i <= bodyPart.length(); i++) {
+            char c = i < bodyPart.length() ? bodyPart.charAt(i) : ',';
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                String predicate = bodyPart.substring(start, i).trim();
+                if (!predicate.isEmpty()) {
+                    body.add(predicate);
+                }
+                start = i + 1;
+            }
+        }
+
+        try {
+
+            // Crear nueva instancia de Rule
+            rules.add(new Rule(head, body, parseAttributes(attributesStr)));
+
+        } catch (NumberFormatException e) {
+
+            // Manejar el error si los atributos no son números válidos
+            System.err.println("Error parsing attributes in line: " + line);
+
+        }
+
+    }
+
+    // Procesar los hechos
+    private void processFact(String line) {
+
+        // Separar el nombre y argumento de los atributos
+        String[] mainParts = line.split("\\. ");
+
+        String factData = mainParts[0];
+        String attributesStr = mainParts[1].replaceAll("[{}\\s]", "");
+
+        // Extraer nombre y argumento
+        int openParenIndex = factData.indexOf('(');
+        int closeParenIndex = factData.lastIndexOf(')');
+
+        String name = factData.substring(0, openParenIndex).trim();
+        String argument = factData.substring(openParenIndex + 1, closeParenIndex).trim();
+
+        try {
+
+            // Crear nueva instancia de Fact
+            facts.add(new Fact(name, argument, parseAttributes(attributesStr)));
+
+        } catch (NumberFormatException e) {
+
+            // Manejar el error si los atributos no son números válidos
+            System.err.println("Error parsing attributes in line: " + line);
+
+        }
+
+    }
+
+    // Procesar los atributos, separados por comas
+    private static double[] parseAttributes(String attributesStr) {
+        String[] attributeStrings = attributesStr.split(",");
+        double[] attributes = new double[attributeStrings.length];
+
+        for (int i = 0; i < attributeStrings.length; i++) {
+            attributes[i] = Double.parseDouble(attributeStrings[i]);
+        }
+
+        return attributes;
+    }
+
+    /**
+     * Interpreta la matriz de funciones: una linea por atributo, con las
+     * funciones de soporte, agregacion y conflicto separadas por ";"
+     *
+     * @param text Texto con las funciones
+     * @return Matriz de funciones por atributo
+     */
+    public static String[][] parseFunctions(String text) {
+        List<String[]> functions = new ArrayList<>();
+
+        for (String line : text.split("\n")) {
+
+            line = line.trim();
+
+            if (line.isEmpty()) continue;
+
+            String[] columns = line.split(";");
+
+            if (columns.length != 3) {
+                throw new IllegalArgumentException("Expected support;aggregation;conflict in line: " + line);
+            }
+
+            functions.add(new String[] {columns[0].trim(), columns[1].trim(), columns[2].trim()});
+        }
+
+        return functions.toArray(new String[0][]);
+    }
+
+    /**
+     * Funciones que se usan cuando no se indican otras
+     *
+     * @param attributes Cantidad de atributos
+     * @return Matriz con soporte X + Y, agregacion X * Y y conflicto X - Y
+     * para cada atributo
+     */
+    public static String[][] defaultFunctions(int attributes) {
+        String[][] functions = new String[attributes][3];
+
+        for (int i = 0; i < attributes; i++) {
+            functions[i][0] = "X + Y";
+            functions[i][1] = "X * Y";
+            functions[i][2] = "X - Y";
+        }
+
+        return functions;
+    }
+}
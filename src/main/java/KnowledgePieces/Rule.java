@@ -1,16 +1,78 @@
 package KnowledgePieces;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Rule extends KnowledgePiece{
     
+    // Variable implicita de los predicados escritos sin argumentos
+    private static final List<String> DEFAULT_TERMS = List.of("X");
+
     private final String head;
     private final List<String> body;
+    private final int headId;
+    private final int[] bodyIds;
+    private final List<String> headTerms;
+    private final List<List<String>> bodyTerms;
+    private final boolean singleVariable;
 
-    public Rule(String head, List<String> body, Double[] attributes) {
-        this.head = head;
-        this.body = body;
+    /**
+     * Constructor principal. La cabeza y cada elemento del cuerpo pueden
+     * ser solo el nombre del predicado, que se entiende aplicado a la
+     * variable X, o el predicado con sus argumentos, como en "owns(X,Y)".
+     * Los argumentos que empiezan con mayuscula o con "_" son variables,
+     * el resto son constantes
+     *
+     * @param head Cabeza de la regla
+     * @param body Predicados del cuerpo de la regla
+     * @param attributes Valores de los atributos
+     */
+    public Rule(String head, List<String> body, double[] attributes) {
+        this.headId = SymbolTable.intern(predicate(head));
+        this.bodyIds = new int[body.size()];
+        this.head = SymbolTable.symbol(headId);
+        this.body = new ArrayList<>(body.size());
+        this.headTerms = terms(head);
+        this.bodyTerms = new ArrayList<>(body.size());
         this.attributes = attributes;
+        
+        // Se guardan los identificadores y una unica copia de cada nombre
+        for (int i = 0; i < bodyIds.length; i++) {
+            bodyIds[i] = SymbolTable.intern(predicate(body.get(i)));
+            this.body.add(SymbolTable.symbol(bodyIds[i]));
+            this.bodyTerms.add(terms(body.get(i)));
+        }
+
+        // La regla relaciona un unico argumento si todos sus predicados usan la misma variable
+        this.singleVariable = headTerms.size() == 1 && isVariable(headTerms.getFirst())
+                && bodyTerms.stream().allMatch(terms -> terms.equals(headTerms));
+    }
+
+    // Nombre del predicado de un elemento de la regla
+    private static String predicate(String atom) {
+        int openParenIndex = atom.indexOf('(');
+
+        return (openParenIndex < 0 ? atom : atom.substring(0, openParenIndex)).trim();
+    }
+
+    // Argumentos de un elemento de la regla
+    private static List<String> terms(String atom) {
+        int openParenIndex = atom.indexOf('(');
+        int closeParenIndex = atom.lastIndexOf(')');
+
+        if (openParenIndex < 0 || closeParenIndex < openParenIndex) {
+            return DEFAULT_TERMS;
+        }
+
+        return Arrays.stream(atom.substring(openParenIndex + 1, closeParenIndex).split(","))
+                .map(String::trim)
+                .toList();
+    }
+
+    // Determina si un argumento es una variable
+    public static boolean isVariable(String term) {
+        return !term.isEmpty() && (Character.isUpperCase(term.charAt(0)) || term.charAt(0) == '_');
     }
 
     public String getHead() {
@@ -20,10 +82,48 @@ public class Rule extends KnowledgePiece{
     public List<String> getBody() {
         return body;
     }
+
+    public int getHeadId() {
+        return headId;
+    }
+
+    public int[] getBodyIds() {
+        return bodyIds;
+    }
+
+    public List<String> getHeadTerms() {
+        return headTerms;
+    }
+
+    // Argumentos de cada predicado del cuerpo, en el mismo orden que el cuerpo
+    public List<List<String>> getBodyTerms() {
+        return bodyTerms;
+    }
+
+    /**
+     * Indica si todos los predicados de la regla tienen un unico argumento
+     * y es la misma variable. Estas reglas se evaluan argumento por
+     * argumento; el resto necesita combinar hechos con distintos argumentos
+     */
+    public boolean isSingleVariable() {
+        return singleVariable;
+    }
     
     @Override
-    public String toString() {        
-        return head + "(X) :- " + body.toString().substring(1, body.toString().length()-1) + "(X).";
+    public String toString() {
+        if (singleVariable) {
+            String variable = headTerms.getFirst();
+
+            return head + "(" + variable + ") :- " + body.toString().substring(1, body.toString().length()-1) + "(" + variable + ").";
+        }
+
+        List<String> atoms = new ArrayList<>(body.size());
+
+        for (int i = 0; i < body.size(); i++) {
+            atoms.add(body.get(i) + "(" + String.join(",", bodyTerms.get(i)) + ")");
+        }
+
+        return head + "(" + String.join(",", headTerms) + ") :- " + String.join(", ", atoms) + ".";
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package KnowledgePieces;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tabla de simbolos compartida que asigna identificadores enteros a los
+ * nombres de predicados y argumentos, y a cada par (predicado, argumento).
+ * Permite comparar hechos por enteros y guardar una unica copia de cada cadena
+ *
+ * La tabla es unica para todo el proceso porque los identificadores se
+ * comparan entre motores, grafos compactos e instantaneas recargadas, que
+ * no comparten ninguna otra estructura; por eso los simbolos no se quitan.
+ * Solo el registro de simbolos nuevos toma un lock: obtener el simbolo de
+ * un identificador es una lectura de un arreglo publicado como volatile
+ */
+public final class SymbolTable {
+
+    // Identificador de cada simbolo
+    private static final Map<String, Integer> symbolIds = new ConcurrentHashMap<>();
+    // Simbolo de cada identificador; al crecer se reemplaza por una copia mas grande
+    private static volatile String[] symbols = new String[1024];
+    // Cantidad de simbolos registrados, solo se usa con el lock tomado
+    private static int symbolCount;
+    private static final Object lock = new Object();
+    // Identificador de cada par (predicado, argumento)
+    private static final Map<Long, Integer> atomIds = new ConcurrentHashMap<>();
+    // Predicado sin negacion de cada predicado
+    private static final Map<Integer, Integer> positiveIds = new ConcurrentHashMap<>();
+    // Identificadores de los terminos de cada tupla de argumentos
+    private static final Map<Integer, int[]> tupleTerms = new ConcurrentHashMap<>();
+
+    private SymbolTable() {}
+
+    /**
+     * Obtiene el identificador de un simbolo, registrandolo si es nuevo
+     *
+     * @param symbol Nombre de un predicado o argumento
+     * @return Identificador entero del simbolo
+     */
+    public static int intern(String symbol) {
+        Integer id = symbolIds.get(symbol);
+
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (lock) {
+            return symbolIds.computeIfAbsent(symbol, key -> {
+                String[] array = symbols;
+
+                if (symbolCount == array.length) {
+                    array = Arrays.copyOf(array, 2 * array.length);
+                }
+
+                // El simbolo se publica antes que su identificador
+                array[symbolCount] = key;
+                symbols = array;
+                return symbolCount++;
+            });
+        }
+    }
+
+    // Obtiene el simbolo de un identificador, sin tomar locks
+    public static String symbol(int id) {
+        return symbols[id];
+    }
+
+    /**
+     * Obtiene el identificador unico de un par (predicado, argumento), de
+     * modo que dos hechos con el mismo nombre y argumento comparten el mismo
+     */
+    public static int atom(int predicate, int argument) {
+        long key = ((long) predicate << 32) | (argument & 0xffffffffL);
+        Integer id = atomIds.get(key);
+
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (atomIds) {
+            return atomIds.computeIfAbsent(key, k -> atomIds.size());
+        }
+    }
+
+    /**
+     * Obtiene el identificador de una tupla de argumentos, que es el del
+     * simbolo formado por sus terminos separados por comas. Una tupla de
+     * un unico termino tiene el mismo identificador que el termino
+     *
+     * @param terms Identificadores de los terminos
+     * @return Identificador de la tupla
+     */
+    public static int tuple(int[] terms) {
+        if (terms.length == 1) {
+            return terms[0];
+        }
+
+        StringBuilder symbol = new StringBuilder(symbol(terms[0]));
+
+        for (int i = 1; i < terms.length; i++) {
+            symbol.append(',').append(symbol(terms[i]));
+        }
+
+        return intern(symbol.toString());
+    }
+
+    /**
+     * Obtiene los identificadores de los terminos de una tupla de
+     * argumentos. El arreglo es compartido y no debe modificarse
+     */
+    public static int[] terms(int tuple) {
+        return tupleTerms.computeIfAbsent(tuple, id -> {
+            String symbol = symbol(id);
+
+            if (symbol.indexOf(',') < 0) {
+                return new int[] {id};
+            }
+
+            return Arrays.stream(symbol.split(",")).mapToInt(SymbolTable::intern).toArray();
+        });
+    }
+
+    // Obtiene el predicado que contradice un predicado negado, quitando sus negaciones
+    public static int positive(int predicate) {
+        return positiveIds.computeIfAbsent(predicate, id -> intern(symbol(id).replace("~", "")));
+    }
+}
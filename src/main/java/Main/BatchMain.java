@@ -0,0 +1,229 @@
+package Main;
+
+import InferenceEngine.ArgumentativeGraph;
+import InferenceEngine.GraphExporter;
+import InferenceEngine.InferenceEngine;
+import InferenceEngine.Pair;
+import KnowledgePieces.Fact;
+import KnowledgePieces.KnowledgePiece;
+import KnowledgePieces.ProgramLoader;
+import KnowledgePieces.ProgramParser;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Punto de entrada sin interfaz grafica. Procesa varios programas en la
+ * misma JVM, de modo que la compilacion del JIT se paga una unica vez, y
+ * escribe cada grafo en la salida estandar o en un archivo por programa,
+ * como texto o en uno de los formatos de GraphExporter. No usa clases de
+ * AWT ni Swing, por lo que puede ejecutarse con -Djava.awt.headless=true
+ *
+ * Uso: BatchMain [-functions archivo] [-output directorio] [-threads n]
+ * [-format text|dot|graphml|jsonl] programa...
+ *
+ * Las funciones estandar se evaluan con vectores solo si la JVM se inicia
+ * con --add-modules jdk.incubator.vector; sin el modulo se usa la
+ * evaluacion escalar, con los mismos resultados
+ */
+public class BatchMain {
+
+    private static final String USAGE = "Usage: BatchMain [-functions file] [-output directory] [-threads n]"
+            + " [-format text|dot|graphml|jsonl] program...\n"
+            + "Standard functions use the Vector API only if the JVM is started with"
+            + " --add-modules jdk.incubator.vector; otherwise they are evaluated one value at a time";
+
+    public static void main(String[] args) {
+        String[][] functions = null;
+        Path output = null;
+        int threads = 0;
+        // null para el formato de texto
+        GraphExporter.Format format = null;
+        List<Path> programs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-functions" -> functions = ProgramParser.parseFunctions(Files.readString(Path.of(value(args, i++))));
+                    case "-output" -> output = Files.createDirectories(Path.of(value(args, i++)));
+                    case "-threads" -> threads = Integer.parseInt(value(args, i++));
+                    case "-format" -> format = format(value(args, i++));
+                    default -> programs.add(Path.of(args[i]));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println(e.getMessage() != null ? e.getMessage() : USAGE);
+            System.exit(2);
+        }
+
+        if (programs.isEmpty()) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        // Dos programas con el mismo nombre en distintos directorios escribirian el mismo archivo
+        if (output != null) {
+            Map<String, Path> names = new HashMap<>();
+
+            for (Path program : programs) {
+                String name = outputName(program, format);
+                // Los sistemas de archivos que no distinguen mayusculas tambien los confundirian
+                Path previous = names.putIfAbsent(name.toLowerCase(Locale.ROOT), program);
+
+                if (previous != null) {
+                    System.err.println("Programs " + previous + " and " + program + " would both be written to "
+                            + output.resolve(name) + "; rename one or use separate runs");
+                    System.exit(2);
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        int failed = 0;
+
+        // Un error en un programa no detiene el resto del lote
+        for (Path program : programs) {
+            try {
+                run(program, functions, output, threads, format);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error processing " + program + ": " + e);
+                failed++;
+            }
+        }
+
+        System.err.printf(Locale.ROOT, "Processed %d programs (%d failed) in %d ms%n",
+                programs.size(), failed, (System.nanoTime() - start) / 1_000_000);
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    // Genera el grafo de un programa y lo escribe en su destino
+    private static void run(Path program, String[][] functions, Path output, int threads,
+            GraphExporter.Format format) throws IOException {
+        // El archivo se interpreta directamente desde memoria mapeada
+        ProgramLoader parser = new ProgramLoader();
+        parser.load(program);
+
+        if (parser.getFacts().isEmpty()) {
+            throw new IllegalArgumentException("The program has no facts");
+        }
+
+        // Sin archivo de funciones se usan las mismas que en la vista
+        String[][] programFunctions = functions != null
+                ? functions
+                : ProgramParser.defaultFunctions(parser.getFacts().getFirst().getAttributes().length);
+
+        InferenceEngine engine = new InferenceEngine(parser.getFacts(), parser.getRules(), programFunctions);
+        ArgumentativeGraph graph = threads > 0 ? engine.buildTree(threads) : engine.buildTree();
+
+        if (output == null) {
+            PrintWriter writer = new PrintWriter(System.out, false, StandardCharsets.UTF_8);
+
+            if (format == null) {
+                writer.println("# " + program);
+                write(graph, writer);
+            } else {
+                GraphExporter.export(graph, format, writer);
+            }
+            writer.flush();
+        } else {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output.resolve(outputName(program, format)),
+                    StandardCharsets.UTF_8))) {
+                if (format == null) {
+                    write(graph, writer);
+                } else {
+                    GraphExporter.export(graph, format, writer);
+                }
+            }
+        }
+    }
+
+    // Valor de una opcion; si falta se informa el uso
+    private static String value(String[] args, int option) {
+        if (option + 1 >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[option] + "\n" + USAGE);
+        }
+        return args[option + 1];
+    }
+
+    // Archivo de salida de un programa: su nombre sin extension, con la del formato
+    private static String outputName(Path program, GraphExporter.Format format) {
+        String extension = format == null ? ".txt" : "." + format.name().toLowerCase(Locale.ROOT);
+        return program.getFileName().toString().replaceFirst("\\.[^.]*$", "") + extension;
+    }
+
+    // Formato de salida indicado con -format, o null para el formato de texto
+    private static GraphExporter.Format format(String name) {
+        return name.equals("text") ? null : GraphExporter.Format.valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Escribe las aristas, los valores de los hechos y los conflictos del
+     * grafo, una linea por elemento. Las aristas del grafo no tienen un
+     * orden fijo, por lo que cada seccion se ordena y la salida es la misma
+     * en cada ejecucion
+     */
+    static void write(ArgumentativeGraph graph, PrintWriter writer) {
+        Set<Fact> facts = new LinkedHashSet<>();
+        List<String> edges = new ArrayList<>();
+
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : graph.edges().entrySet()) {
+            if (entry.getKey() instanceof Fact fact) {
+                facts.add(fact);
+            }
+
+            for (Fact target : entry.getValue()) {
+                edges.add(entry.getKey() + " -> " + target);
+                facts.add(target);
+            }
+        }
+
+        List<String> values = new ArrayList<>(facts.size());
+
+        for (Fact fact : facts) {
+            values.add(fact + " " + values(fact.getAttributes()) + " " + values(fact.getDeltaAttributes()));
+        }
+
+        List<String> conflicts = new ArrayList<>();
+
+        for (Pair pair : graph.conflictiveNodes()) {
+            conflicts.add(pair.first() + " x " + pair.second());
+        }
+
+        section(writer, "edges", edges);
+        section(writer, "facts", values);
+        section(writer, "conflicts", conflicts);
+    }
+
+    private static void section(PrintWriter writer, String title, List<String> lines) {
+        Collections.sort(lines);
+        writer.println(title);
+
+        for (String line : lines) {
+            writer.println("  " + line);
+        }
+    }
+
+    private static String values(double[] values) {
+        if (values == null) {
+            return "{}";
+        }
+
+        List<String> text = new ArrayList<>(values.length);
+
+        for (double value : values) {
+            text.add(String.format(Locale.ROOT, "%.4f", value));
+        }
+
+        return "{" + String.join(", ", text) + "}";
+    }
+}
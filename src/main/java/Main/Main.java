@@ -2,6 +2,13 @@ package Main;
 
 import Views.ProgramView;
 
+/**
+ * Punto de entrada con interfaz grafica. Las funciones estandar se evaluan
+ * con vectores solo si la JVM se inicia con --add-modules
+ * jdk.incubator.vector, por ejemplo
+ * java --add-modules jdk.incubator.vector -jar LAF.jar; sin el modulo se
+ * usa la evaluacion escalar, con los mismos resultados
+ */
 public class Main {
 
     public static void main(String[] args) {
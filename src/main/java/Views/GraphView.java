@@ -1,6 +1,8 @@
 package Views;
 
 import InferenceEngine.ArgumentativeGraph;
+import InferenceEngine.CompactGraph;
+import InferenceEngine.GraphSnapshot;
 import InferenceEngine.Pair;
 import KnowledgePieces.*;
 import org.jgrapht.Graph;
@@ -33,11 +35,11 @@ public class GraphView extends JFrame {
     /**
      * Clase interna para representar nodos del grafo con información adicional
      */
-    class GraphNode {
+    static class GraphNode {
     private final KnowledgePiece knowledgePiece;
     private final String displayName;
-    private final Double[] attributes;
-    private final Double[] deltaAttributes;
+    private final double[] attributes;
+    private final double[] deltaAttributes;
     private final boolean isCANode;
 
     // ✅ ID único para distinguir nodos (especialmente CA)
@@ -80,11 +82,11 @@ public class GraphView extends JFrame {
         return displayName;
     }
 
-    public Double[] getAttributes() {
+    public double[] getAttributes() {
         return attributes;
     }
 
-    public Double[] getDeltaAttributes() {
+    public double[] getDeltaAttributes() {
         return deltaAttributes;
     }
 
@@ -168,11 +170,32 @@ public class GraphView extends JFrame {
         setupUI();
     }
     
+    // Muestra un grafo compacto a traves de su estructura de aristas equivalente
+    public GraphView(CompactGraph graph) {
+        this(graph.toArgumentativeGraph());
+    }
+    
     /**
      * Inicializa el grafo a partir de la estructura de aristas
      */
     private void initializeGraph() {
-        graph = new DefaultDirectedGraph<>(DefaultEdge.class);
+        graph = buildGraph(edgeStructure, conflictiveNodes);
+
+        // 4) Crear el adaptador JGraphX (YA con CA incluidos)
+        graphAdapter = new JGraphXAdapter<>(graph);
+    }
+    
+    /**
+     * Arma el grafo JGraphT con los nodos CA, sin crear componentes de
+     * Swing, por lo que tambien se usa en los benchmarks
+     * 
+     * @param edgeStructure Aristas del grafo argumentativo
+     * @param conflictiveNodes Pares de hechos en conflicto
+     * @return Grafo con un nodo por pieza de conocimiento y un nodo CA por conflicto
+     */
+    static Graph<GraphNode, DefaultEdge> buildGraph(Map<KnowledgePiece, List<Fact>> edgeStructure,
+            List<Pair> conflictiveNodes) {
+        Graph<GraphNode, DefaultEdge> graph = new DefaultDirectedGraph<>(DefaultEdge.class);
 
         // Crear mapa de KnowledgePiece a GraphNode para evitar duplicados
         Map<KnowledgePiece, GraphNode> nodeMap = new HashMap<>();
@@ -219,8 +242,7 @@ public class GraphView extends JFrame {
             }
         }
 
-        // 4) Crear el adaptador JGraphX (YA con CA incluidos)
-        graphAdapter = new JGraphXAdapter<>(graph);
+        return graph;
     }
 
     /**
@@ -444,13 +466,40 @@ public class GraphView extends JFrame {
         JButton zoomOutButton = new JButton("Zoom -");
         zoomOutButton.addActionListener(e -> graphComponent.zoomOut());
         
+        JButton saveButton = new JButton("Guardar");
+        saveButton.addActionListener(e -> saveSnapshot());
+        
         panel.add(new JSeparator(SwingConstants.VERTICAL));
         panel.add(zoomInButton);
         panel.add(zoomOutButton);
+        panel.add(saveButton);
         
         return panel;
     }
     
+    /**
+     * Guarda el grafo en un archivo .lafg, que se puede abrir desde la
+     * vista del programa sin volver a generarlo
+     */
+    private void saveSnapshot() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("grafo.lafg"));
+
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        try {
+            ArgumentativeGraph graph = new ArgumentativeGraph(edgeStructure, conflictiveNodes);
+            GraphSnapshot.write(CompactGraph.of(graph), chooser.getSelectedFile().toPath());
+        } catch (java.io.IOException e) {
+            JOptionPane.showMessageDialog(this,
+                "The graph could not be saved: " + e.getMessage(),
+                "Save Error",
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
     /**
      * Aplica un layout jerárquico al grafo
      */
@@ -1,10 +1,8 @@
 package Views;
 
-import KnowledgePieces.Rule;
-import KnowledgePieces.Fact;
+import KnowledgePieces.ProgramParser;
+import InferenceEngine.GraphSnapshot;
 import InferenceEngine.InferenceEngine;
-import java.util.ArrayList;
-import java.util.List;
 import javax.swing.JFrame;
 
 /**
@@ -14,13 +12,11 @@ import javax.swing.JFrame;
  */
 public class ProgramView extends javax.swing.JFrame {
 
-    private final List<Fact> facts;
-    private final List<Rule> rules;
+    private final ProgramParser parser;
     String[][] functions;
 
     public ProgramView() {
-        facts = new ArrayList<>();
-        rules = new ArrayList<>();
+        parser = new ProgramParser();
         initComponents();
     }
 
@@ -29,6 +25,7 @@ public class ProgramView extends javax.swing.JFrame {
 
         programPanel = new javax.swing.JPanel();
         nextButton = new javax.swing.JButton();
+        openButton = new javax.swing.JButton();
         programScrollPanel = new javax.swing.JScrollPane();
         programTextArea = new javax.swing.JTextArea();
 
@@ -47,6 +44,14 @@ public class ProgramView extends javax.swing.JFrame {
             }
         });
 
+        openButton.setFont(new java.awt.Font("Segoe UI", 0, 16)); // NOI18N
+        openButton.setText("ABRIR");
+        openButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                openButtonActionPerformed(evt);
+            }
+        });
+
         programTextArea.setColumns(20);
         programTextArea.setRows(5);
         programTextArea.setVerifyInputWhenFocusTarget(false);
@@ -59,11 +64,12 @@ public class ProgramView extends javax.swing.JFrame {
         // Centro: el scroll crece/encoge con la ventana
         programPanel.add(programScrollPanel, java.awt.BorderLayout.CENTER);
 
-        // Sur: botón alineado a la derecha
+        // Sur: botones alineados a la derecha
         javax.swing.JPanel southPanel = new javax.swing.JPanel(
-                new java.awt.FlowLayout(java.awt.FlowLayout.RIGHT, 0, 0)
+                new java.awt.FlowLayout(java.awt.FlowLayout.RIGHT, 12, 0)
         );
         southPanel.setOpaque(false); // mantener el fondo blanco del programPanel
+        southPanel.add(openButton);
         southPanel.add(nextButton);
         programPanel.add(southPanel, java.awt.BorderLayout.SOUTH);
 
@@ -79,129 +85,40 @@ public class ProgramView extends javax.swing.JFrame {
     }
 
     private void nextButtonActionPerformed(java.awt.event.ActionEvent evt) {
-        // Limpiar hechos y reglas
-        facts.clear();
-        rules.clear();
-
-        String program = programTextArea.getText();
-        String[] lines = program.split("\n");
-
-        for (String line : lines) {
-
-            line = line.trim();
-
-            if (line.isEmpty()) continue;
-
-            if (line.contains(":-")) {
-                processRule(line);
-            } else {
-                processFact(line);
-            }
-
-        }
+        // Interpretar los hechos y reglas del programa
+        parser.parse(programTextArea.getText());
 
         setFunctions();
 
-        InferenceEngine laf = new InferenceEngine(facts, rules, functions);
+        InferenceEngine laf = new InferenceEngine(parser.getFacts(), parser.getRules(), functions);
         GraphView graphView = new GraphView(laf.buildTree());
         graphView.setVisible(true);
     }
 
-    // Procesar las reglas
-    private void processRule(String line) {
+    // Abrir un grafo guardado desde la vista del grafo, sin volver a generarlo
+    private void openButtonActionPerformed(java.awt.event.ActionEvent evt) {
+        javax.swing.JFileChooser chooser = new javax.swing.JFileChooser();
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Grafos LAF (*.lafg)", "lafg"));
 
-        // Separar la regla de los atributos
-        String[] mainParts = line.split("\\. ");
-
-        String ruleData = mainParts[0];
-        String attributesStr = mainParts[1].replaceAll("[{}\\s]", "");
-
-        // Separar cabeza y cuerpo
-        String[] ruleParts = ruleData.split(":-");
-
-        // Procesar la cabeza
-        String headPart = ruleParts[0].trim();
-        int openParenIndex = headPart.indexOf('(');
-
-        String head = headPart.substring(0, openParenIndex).trim();
-
-        // Procesar el cuerpo
-        String bodyPart = ruleParts[1].trim();
-        ArrayList<String> body = new ArrayList<>();
-
-        // Dividir el cuerpo en predicados individuales
-        String[] predicates = bodyPart.split(",");
-        for (String predicate : predicates) {
-            predicate = predicate.trim();
-            if (!predicate.isEmpty()) {
-                body.add(predicate.replaceAll("\\(.*?\\)", ""));
-            }
+        if (chooser.showOpenDialog(this) != javax.swing.JFileChooser.APPROVE_OPTION) {
+            return;
         }
 
-        // Procesar los atributos
-        String[] attributeStrings = attributesStr.split(",");
-        Double[] attributes = new Double[attributeStrings.length];
-
         try {
-
-            for (int i = 0; i < attributeStrings.length; i++) {
-                attributes[i] = Double.valueOf(attributeStrings[i]);
-            }
-
-            // Crear nueva instancia de Rule
-            rules.add(new Rule(head, body, attributes));
-
-        } catch (NumberFormatException e) {
-
-            // Manejar el error si los atributos no son números válidos
-            System.err.println("Error parsing attributes in line: " + line);
-
+            GraphView graphView = new GraphView(GraphSnapshot.read(chooser.getSelectedFile().toPath()));
+            graphView.setVisible(true);
+        } catch (java.io.IOException e) {
+            javax.swing.JOptionPane.showMessageDialog(this,
+                    "The graph could not be opened: " + e.getMessage(),
+                    "Open Error",
+                    javax.swing.JOptionPane.ERROR_MESSAGE);
         }
-
-    }
-
-    // Procesar los hechos
-    private void processFact(String line) {
-
-        // Separar el nombre y argumento de los atributos
-        String[] mainParts = line.split("\\. ");
-
-        String factData = mainParts[0];
-        String attributesStr = mainParts[1].replaceAll("[{}\\s]", "");
-
-        // Extraer nombre y argumento
-        int openParenIndex = factData.indexOf('(');
-        int closeParenIndex = factData.indexOf(')');
-
-        String name = factData.substring(0, openParenIndex).trim();
-        String argument = factData.substring(openParenIndex + 1, closeParenIndex).trim();
-
-        // Procesar los atributos
-        String[] attributeStrings = attributesStr.split(",");
-        Double[] attributes = new Double[attributeStrings.length];
-
-        try {
-
-            for (int i = 0; i < attributeStrings.length; i++) {
-                attributes[i] = Double.valueOf(attributeStrings[i]);
-            }
-
-            // Crear nueva instancia de Fact
-            facts.add(new Fact(name, argument, attributes));
-
-        } catch (NumberFormatException e) {
-
-            // Manejar el error si los atributos no son números válidos
-            System.err.println("Error parsing attributes in line: " + line);
-
-        }
-
     }
 
     // Procesar las funciones
     private void setFunctions() {
 
-        int attributes = facts.getFirst().getAttributes().length;
+        int attributes = parser.getFacts().getFirst().getAttributes().length;
 
         OperationsView dialog = new OperationsView(this, attributes);
         dialog.setVisible(true);
@@ -215,18 +132,14 @@ public class ProgramView extends javax.swing.JFrame {
             }
         } else {
             // Si el usuario cancela, usar las funciones por defecto
-            functions = new String[attributes][3];
-            for (int i = 0; i < attributes; i++) {
-                functions[i][0] = "X + Y";
-                functions[i][1] = "X * Y";
-                functions[i][2] = "X - Y";
-            }
+            functions = ProgramParser.defaultFunctions(attributes);
         }
 
     }
 
     // Variables declaration
     private javax.swing.JButton nextButton;
+    private javax.swing.JButton openButton;
     private javax.swing.JPanel programPanel;
     private javax.swing.JScrollPane programScrollPanel;
     private javax.swing.JTextArea programTextArea;
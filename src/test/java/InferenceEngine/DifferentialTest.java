@@ -0,0 +1,340 @@
+package InferenceEngine;
+
+import static InferenceEngine.GeneratedPrograms.canonical;
+import static InferenceEngine.GeneratedPrograms.joins;
+import static InferenceEngine.GeneratedPrograms.parse;
+import static InferenceEngine.GeneratedPrograms.program;
+import static InferenceEngine.GeneratedPrograms.recursive;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import KnowledgePieces.Fact;
+import KnowledgePieces.KnowledgePiece;
+import KnowledgePieces.ProgramLoader;
+import KnowledgePieces.ProgramParser;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.LongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas diferenciales: cada forma de generar, actualizar, consultar,
+ * guardar o escribir el grafo se compara con buildTree() secuencial sobre
+ * los mismos programas generados: aciclicos, recursivos y con joins
+ */
+class DifferentialTest {
+
+    private static final int PROGRAMS = 300;
+    private static final int JOIN_PROGRAMS = 100;
+    private static final String[][] FUNCTIONS = ProgramParser.defaultFunctions(2);
+    // Grafos del motor original, por tipo de programa y semilla
+    private static final Map<String, Map<Long, String>> BASELINE = baseline();
+    // Recursivos con los que el motor original deja de terminar al añadir o quitar hechos
+    private static final Set<Long> UNSTABLE = Set.of(77L, 102L, 127L, 163L);
+
+    @TempDir
+    Path directory;
+
+    // Grafo de referencia: generacion secuencial sobre hechos recien leidos
+    private static List<String> sequential(String program, String[][] functions) {
+        ProgramParser parser = parse(program);
+        return canonical(new InferenceEngine(parser.getFacts(), parser.getRules(), functions).buildTree());
+    }
+
+    private static InferenceEngine engine(String program) {
+        ProgramParser parser = parse(program);
+        return new InferenceEngine(parser.getFacts(), parser.getRules(), FUNCTIONS);
+    }
+
+    private static Map<String, Map<Long, String>> baseline() {
+        Map<String, Map<Long, String>> graphs = new HashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                DifferentialTest.class.getResourceAsStream("baseline-graphs.txt"), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.startsWith("#")) {
+                    String[] fields = line.split("\t", -1);
+                    graphs.computeIfAbsent(fields[0], kind -> new TreeMap<>()).put(Long.parseLong(fields[1]), fields[2]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return graphs;
+    }
+
+    private static List<String> programs() {
+        return programs(Set.of());
+    }
+
+    /**
+     * Programas de cada prueba: los aciclicos, los recursivos con los que
+     * el motor original termina, salvo los excluidos, y los que tienen joins
+     */
+    private static List<String> programs(Set<Long> excluded) {
+        List<String> programs = new ArrayList<>();
+
+        for (int seed = 0; seed < PROGRAMS; seed++) {
+            programs.add(program(seed, 2));
+        }
+        for (long seed : BASELINE.get("recursive").keySet()) {
+            if (!excluded.contains(seed)) {
+                programs.add(recursive(seed, 2));
+            }
+        }
+        for (int seed = 0; seed < JOIN_PROGRAMS; seed++) {
+            programs.add(joins(seed, 2));
+        }
+        return programs;
+    }
+
+    /**
+     * El grafo de los programas de referencia es el mismo que generaba el
+     * motor original, que recorria todos los hechos para cada regla, con
+     * agregaciones, recursion y, traducidos a reglas de una variable, joins
+     */
+    @Test
+    void indexedMatchingKeepsOriginalGraphs() {
+        Map<String, LongFunction<String>> generators = Map.of(
+                "program", seed -> program(seed, 1),
+                "recursive", seed -> recursive(seed, 1),
+                "joins", seed -> joins(seed, 1));
+
+        for (Map.Entry<String, Map<Long, String>> kind : BASELINE.entrySet()) {
+            for (Map.Entry<Long, String> graph : kind.getValue().entrySet()) {
+                String program = generators.get(kind.getKey()).apply(graph.getKey());
+
+                assertEquals(graph.getValue(), String.join(" | ", sequential(program, ProgramParser.defaultFunctions(1))),
+                        kind.getKey() + " " + graph.getKey() + "\n" + program);
+            }
+        }
+
+        assertEquals(Map.of("program", 200, "recursive", 100, "joins", 100),
+                Map.of("program", BASELINE.get("program").size(), "recursive", BASELINE.get("recursive").size(),
+                        "joins", BASELINE.get("joins").size()));
+    }
+
+    @Test
+    void parallelMatchesSequential() {
+        for (String program : programs()) {
+            assertEquals(sequential(program, FUNCTIONS), canonical(engine(program).buildTree(4)), program);
+        }
+    }
+
+    @Test
+    void sharedTemplatesMatchSequential() {
+        for (String generated : programs(UNSTABLE)) {
+            // Todos los argumentos con los mismos hechos, mas uno distinto
+            String base = generated.lines()
+                    .filter(line -> !line.contains(":-"))
+                    .map(line -> line.replaceFirst("\\(\\w+\\)", "(X)"))
+                    .distinct()
+                    .reduce("", (text, line) -> text + line + "\n");
+            StringBuilder program = new StringBuilder();
+
+            for (String argument : List.of("a", "b", "c", "d")) {
+                program.append(base.replace("(X)", "(" + argument + ")"));
+            }
+            program.append(generated);
+
+            assertEquals(sequential(program.toString(), FUNCTIONS),
+                    canonical(engine(program.toString()).buildSharedTree(4)), program.toString());
+        }
+    }
+
+    /**
+     * Los hechos se añaden en dos lotes y luego se quita uno de los
+     * agregados, sobre grafos generados por argumentos o de forma secuencial
+     */
+    @Test
+    void assertAndRetractMatchSequential() {
+        for (String program : programs(UNSTABLE)) {
+            List<String> facts = program.lines().filter(line -> !line.contains(":-")).toList();
+            String rules = program.lines().filter(line -> line.contains(":-")).reduce("", (text, line) -> text + line + "\n");
+            int half = facts.size() / 2;
+            String first = String.join("\n", facts.subList(0, half)) + "\n";
+            String second = String.join("\n", facts.subList(half, facts.size())) + "\n";
+            // Se quitan todos los hechos iniciales con el mismo nombre y argumento
+            Fact retracted = parse(second).getFacts().getFirst();
+            String remaining = program.lines()
+                    .filter(line -> line.contains(":-") || !line.startsWith(retracted.toString()))
+                    .reduce("", (text, line) -> text + line + "\n");
+
+            for (int parallelism : new int[] {2, 0}) {
+                InferenceEngine engine = engine(first + rules);
+
+                if (parallelism > 0) {
+                    engine.buildTree(parallelism);
+                } else {
+                    engine.buildTree();
+                }
+                ArgumentativeGraph asserted = engine.assertFacts(parse(second).getFacts());
+
+                assertEquals(sequential(first + second + rules, FUNCTIONS), canonical(asserted), program);
+                assertEquals(sequential(remaining, FUNCTIONS), canonical(engine.retractFacts(List.of(retracted))), program);
+            }
+        }
+    }
+
+    /**
+     * La consulta da los mismos hechos, con los mismos valores, que quedan
+     * en la lista de hechos al generar el grafo completo
+     */
+    @Test
+    void queryMatchesSequential() {
+        for (String program : programs()) {
+            ProgramParser parser = parse(program);
+            new InferenceEngine(parser.getFacts(), parser.getRules(), FUNCTIONS).buildTree();
+            Map<String, List<String>> expected = new HashMap<>();
+
+            for (Fact fact : parser.getFacts()) {
+                expected.computeIfAbsent(fact.toString(), atom -> new ArrayList<>()).add(GeneratedPrograms.node(fact));
+            }
+
+            // Un mismo motor responde todas las consultas, reutilizando las dependencias calculadas
+            InferenceEngine engine = engine(program);
+
+            for (Map.Entry<String, List<String>> goal : expected.entrySet()) {
+                Fact fact = parse(goal.getKey() + " {0}").getFacts().getFirst();
+                List<String> actual = engine.query(fact.getName(), fact.getArgument()).goalFacts().stream()
+                        .map(GeneratedPrograms::node)
+                        .toList();
+
+                assertEquals(goal.getValue().stream().sorted().toList(), actual.stream().sorted().toList(),
+                        goal.getKey() + "\n" + program);
+            }
+        }
+    }
+
+    // Cada configuracion del barrido da los mismos valores que generar el grafo con ella
+    @Test
+    void sweepMatchesSequential() {
+        List<String[][]> configurations = List.of(
+                FUNCTIONS,
+                new String[][] {{"max(X, Y)", "X + Y - X * Y", "X - Y"}, {"min(X, Y)", "max(X, Y)", "X * Y"}},
+                new String[][] {{"X * 0.5 + Y", "X * Y", "X - Y / 2"}, {"X + Y", "min(X, Y)", "X - Y"}});
+
+        for (String program : programs()) {
+            ProgramParser parser = parse(program);
+            SweepResult result = InferenceEngine.sweep(parser.getFacts(), parser.getRules(), configurations);
+
+            for (int k = 0; k < configurations.size(); k++) {
+                assertEquals(sequential(program, configurations.get(k)), canonical(result.apply(k)), k + "\n" + program);
+            }
+        }
+    }
+
+    @Test
+    void snapshotRoundTripKeepsGraph() throws IOException {
+        List<String> programs = programs();
+
+        for (int i = 0; i < programs.size(); i++) {
+            String program = programs.get(i);
+            ArgumentativeGraph graph = engine(program).buildTree();
+            Path file = directory.resolve(i + ".snapshot");
+
+            GraphSnapshot.write(CompactGraph.of(graph), file);
+
+            assertEquals(canonical(graph), canonical(GraphSnapshot.read(file).toArgumentativeGraph()), program);
+        }
+    }
+
+    // Los nodos y aristas escritos en JSON Lines, con sus valores, son los del grafo y los de su forma compacta
+    @Test
+    void exporterWritesGraph() throws IOException {
+        Pattern node = Pattern.compile("\\{\"type\":\"node\",\"id\":\"(n\\d+)\",\"kind\":\"(\\w+)\",\"label\":\"(.*)\","
+                + "\"attributes\":\\[([^]]*)](?:,\"deltaAttributes\":\\[([^]]*)])?}");
+        Pattern edge = Pattern.compile("\\{\"type\":\"edge\",\"source\":\"(n\\d+)\",\"target\":\"(n\\d+)\",\"kind\":\"(\\w+)\"}");
+
+        for (String program : programs()) {
+            ArgumentativeGraph graph = engine(program).buildTree();
+            StringWriter writer = new StringWriter();
+            GraphExporter.export(graph, GraphExporter.Format.JSONL, writer);
+            Map<String, String> nodes = new HashMap<>();
+            List<String> lines = new ArrayList<>();
+
+            for (String line : writer.toString().lines().toList()) {
+                Matcher matcher = node.matcher(line);
+
+                if (matcher.matches()) {
+                    nodes.put(matcher.group(1), matcher.group(3) + values(matcher.group(4))
+                            + (matcher.group(2).equals("fact") ? values(matcher.group(5)) : ""));
+                    continue;
+                }
+
+                matcher = edge.matcher(line);
+                assertTrue(matcher.matches(), line);
+                String source = nodes.get(matcher.group(1));
+                String target = nodes.get(matcher.group(2));
+                lines.add(matcher.group(3).equals("support") ? source + " -> " + target : "X " + source + " x " + target);
+            }
+
+            lines.sort(null);
+            assertEquals(canonical(graph), lines, program);
+
+            // El grafo compacto numera los nodos igual, por lo que se escriben las mismas lineas
+            StringWriter compact = new StringWriter();
+            GraphExporter.export(CompactGraph.of(graph), GraphExporter.Format.JSONL, compact);
+            assertEquals(compact.toString().lines().sorted().toList(), writer.toString().lines().sorted().toList(), program);
+        }
+    }
+
+    private static String values(String json) {
+        return GeneratedPrograms.values(Arrays.stream(json.split(",")).mapToDouble(Double::parseDouble).toArray());
+    }
+
+    /**
+     * El cargador de archivos lee los mismos hechos y reglas que
+     * ProgramParser, tambien al dividir el archivo en partes
+     */
+    @Test
+    void loaderMatchesParser() throws IOException {
+        StringBuilder large = new StringBuilder();
+
+        for (String program : programs()) {
+            large.append(program);
+            assertSameProgram(program, load(program, 1));
+        }
+
+        // Varias partes de al menos 1 MiB
+        while (large.length() < 3 << 20) {
+            large.append(program(new Random(large.length()).nextLong(), 2));
+        }
+        assertSameProgram(large.toString(), load(large.toString(), 4));
+    }
+
+    private ProgramLoader load(String program, int parallelism) throws IOException {
+        Path file = Files.writeString(directory.resolve("program.laf"), program);
+        ProgramLoader loader = new ProgramLoader();
+        loader.load(file, parallelism);
+        return loader;
+    }
+
+    private static void assertSameProgram(String program, ProgramLoader loader) {
+        ProgramParser parser = parse(program);
+
+        assertEquals(pieces(parser.getFacts()), pieces(loader.getFacts()));
+        assertEquals(pieces(parser.getRules()), pieces(loader.getRules()));
+    }
+
+    private static List<String> pieces(List<? extends KnowledgePiece> pieces) {
+        return pieces.stream().map(piece -> piece + Arrays.toString(piece.getAttributes())).toList();
+    }
+}
@@ -0,0 +1,243 @@
+package InferenceEngine;
+
+import KnowledgePieces.Fact;
+import KnowledgePieces.KnowledgePiece;
+import KnowledgePieces.ProgramParser;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Programas generados a partir de una semilla para las pruebas
+ * diferenciales, y forma canonica de un grafo para compararlos. Hay
+ * programas de una variable, aciclicos o recursivos, con negaciones y con
+ * predicados que son el contrario de otros, por lo que tienen
+ * agregaciones y conflictos, y programas con reglas con varias variables
+ */
+final class GeneratedPrograms {
+
+    private static final String[] ARGUMENTS = {"a", "b", "c", "d", "e"};
+
+    // Reglas con varias variables; solo path se usa en otros cuerpos, y cada camino tiene una unica inferencia
+    private static final List<String> JOIN_RULES = List.of(
+            "path(X,Y) :- e(X,Y)",
+            "path(X,Z) :- e(X,Y), path(Y,Z)",
+            "g(X,Z) :- b0(X,Y), b1(Y,Z)",
+            "g(X,Z) :- b1(X,Y), b0(Y,Z)",
+            "~g(X,Y) :- path(X,Y)",
+            "q(X,Z) :- path(X,Y), b1(Y,Z)",
+            "h(X) :- b0(X,Y), u(Y)",
+            "~h(X) :- path(X,Y), u(Y)");
+
+    private GeneratedPrograms() {
+    }
+
+    /**
+     * Genera un programa aciclico en el formato de ProgramParser. Los
+     * valores se generan aparte, por lo que la estructura del programa no
+     * depende de la cantidad de atributos
+     *
+     * @param seed Semilla
+     * @param width Cantidad de atributos de cada hecho y regla
+     * @return Texto del programa
+     */
+    static String program(long seed, int width) {
+        return program(seed, width, false);
+    }
+
+    /**
+     * Genera un programa en el que las reglas pueden depender de si mismas,
+     * directa o indirectamente. Con agregaciones dentro de un ciclo el
+     * motor puede no terminar, igual que el motor original
+     */
+    static String recursive(long seed, int width) {
+        return program(seed, width, true);
+    }
+
+    private static String program(long seed, int width, boolean recursive) {
+        Random random = new Random(seed);
+        Random attributes = new Random(~seed);
+        int n = 3 + random.nextInt(5);
+        String[] predicates = new String[n];
+
+        for (int i = 0; i < n; i++) {
+            predicates[i] = (random.nextInt(4) == 0 ? "~p" : "p") + i;
+        }
+
+        // Algunos predicados son el contrario de otro
+        for (int i = 0; i < n; i++) {
+            if (random.nextInt(5) == 0) {
+                int j = random.nextInt(n);
+
+                if (j != i) {
+                    predicates[i] = predicates[j].startsWith("~") ? predicates[j].substring(1) : "~" + predicates[j];
+                }
+            }
+        }
+
+        StringBuilder program = new StringBuilder();
+        int facts = 2 + random.nextInt(8);
+
+        for (int i = 0; i < facts; i++) {
+            String predicate = predicates[random.nextInt(n - 1)];
+            String argument = ARGUMENTS[random.nextInt(1 + random.nextInt(ARGUMENTS.length))];
+            program.append(predicate).append('(').append(argument).append("). ");
+            values(program, attributes, width, 1);
+        }
+
+        int rules = 1 + random.nextInt(6);
+        // Predicados del cuerpo de las reglas de cada cabeza
+        Map<String, Set<String>> dependencies = new HashMap<>();
+
+        for (int i = 0; i < rules; i++) {
+            int head = 1 + random.nextInt(n - 1);
+            Set<String> body = new LinkedHashSet<>();
+
+            for (int k = 1 + random.nextInt(Math.min(2, head)); k > 0; k--) {
+                body.add(predicates[random.nextInt(recursive ? n : head)]);
+            }
+
+            // Los nombres repetidos por los contrarios pueden formar ciclos, que el motor no admite
+            if (recursive || body.stream().noneMatch(name -> reaches(dependencies, name, predicates[head]))) {
+                dependencies.computeIfAbsent(predicates[head], name -> new HashSet<>()).addAll(body);
+                program.append(predicates[head]).append("(X) :- ")
+                        .append(String.join(", ", body.stream().map(name -> name + "(X)").toList()))
+                        .append(". ");
+                values(program, attributes, width, 0);
+            }
+        }
+
+        return program.toString();
+    }
+
+    /**
+     * Genera un programa con predicados de dos argumentos y reglas con
+     * varias variables: caminos recursivos sobre un bosque de constantes,
+     * donde cada camino se infiere una unica vez, y reglas cuyas tuplas se
+     * infieren por varias combinaciones y se agregan, con sus contrarios
+     */
+    static String joins(long seed, int width) {
+        Random random = new Random(seed);
+        Random attributes = new Random(~seed);
+        StringBuilder program = new StringBuilder();
+
+        // Cada constante tiene a lo sumo un padre, posterior a ella
+        for (int i = 0; i < ARGUMENTS.length - 1; i++) {
+            if (random.nextInt(4) != 0) {
+                int parent = i + 1 + random.nextInt(ARGUMENTS.length - 1 - i);
+                program.append("e(").append(ARGUMENTS[i]).append(',').append(ARGUMENTS[parent]).append("). ");
+                values(program, attributes, width, 1);
+            }
+        }
+
+        // Pares sobre pocas constantes, para que varias combinaciones den la misma tupla
+        for (String name : List.of("b0", "b1")) {
+            Set<String> pairs = new LinkedHashSet<>();
+
+            for (int k = 2 + random.nextInt(5); k > 0; k--) {
+                pairs.add(ARGUMENTS[random.nextInt(3)] + "," + ARGUMENTS[random.nextInt(3)]);
+            }
+
+            for (String pair : pairs) {
+                program.append(name).append('(').append(pair).append("). ");
+                values(program, attributes, width, 1);
+            }
+        }
+
+        for (int i = 0; i < 3; i++) {
+            if (random.nextBoolean()) {
+                program.append("u(").append(ARGUMENTS[i]).append("). ");
+                values(program, attributes, width, 1);
+            }
+        }
+
+        List<String> rules = new ArrayList<>(JOIN_RULES);
+        Collections.shuffle(rules, random);
+
+        for (String rule : rules.subList(0, 3 + random.nextInt(rules.size() - 2))) {
+            program.append(rule).append(". ");
+            values(program, attributes, width, 0);
+        }
+
+        return program.toString();
+    }
+
+    // Indica si un predicado depende, directa o indirectamente, de otro
+    private static boolean reaches(Map<String, Set<String>> dependencies, String from, String to) {
+        Deque<String> pending = new ArrayDeque<>(List.of(from));
+        Set<String> visited = new HashSet<>();
+
+        while (!pending.isEmpty()) {
+            String name = pending.pop();
+
+            if (name.equals(to)) {
+                return true;
+            }
+            if (visited.add(name)) {
+                pending.addAll(dependencies.getOrDefault(name, Set.of()));
+            }
+        }
+        return false;
+    }
+
+    // Valores en decimos, desde el minimo indicado
+    private static void values(StringBuilder program, Random random, int width, int minimum) {
+        List<String> values = new ArrayList<>(width);
+
+        for (int i = 0; i < width; i++) {
+            values.add(String.valueOf((minimum + random.nextInt(10 - minimum)) / 10.0));
+        }
+        program.append('{').append(String.join(", ", values)).append("}\n");
+    }
+
+    static ProgramParser parse(String program) {
+        ProgramParser parser = new ProgramParser();
+        parser.parse(program);
+        return parser;
+    }
+
+    /**
+     * Aristas y conflictos del grafo como texto ordenado, con los valores
+     * de cada nodo, para comparar grafos con distintos objetos
+     */
+    static List<String> canonical(ArgumentativeGraph graph) {
+        List<String> lines = new ArrayList<>();
+
+        for (Map.Entry<KnowledgePiece, List<Fact>> entry : graph.edges().entrySet()) {
+            for (Fact target : entry.getValue()) {
+                lines.add(node(entry.getKey()) + " -> " + node(target));
+            }
+        }
+
+        for (Pair pair : graph.conflictiveNodes()) {
+            lines.add("X " + node(pair.first()) + " x " + node(pair.second()));
+        }
+
+        Collections.sort(lines);
+        return lines;
+    }
+
+    static String node(KnowledgePiece piece) {
+        return piece instanceof Fact fact
+                ? fact + values(fact.getAttributes()) + values(fact.getDeltaAttributes())
+                : piece + values(piece.getAttributes());
+    }
+
+    static String values(double[] values) {
+        StringBuilder text = new StringBuilder("[");
+
+        for (int i = 0; values != null && i < values.length; i++) {
+            text.append(i > 0 ? "," : "").append(String.format(Locale.ROOT, "%.6f", values[i]));
+        }
+        return text.append(']').toString();
+    }
+}
@@ -0,0 +1,191 @@
+package InferenceEngine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import KnowledgePieces.Fact;
+import KnowledgePieces.KnowledgePiece;
+import KnowledgePieces.ProgramParser;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class InferenceEngineTest {
+
+    /**
+     * p1(a) es un hecho inicial y tambien se infiere. Como en el motor
+     * original, un hecho inicial sin aristas no se agrega: si p1 se infiere
+     * primero quedan dos hechos p1(a) y p3(a) no se infiere, y si p3 se
+     * infiere primero p1(a) ya esta en el grafo, se agrega y p3(a) se
+     * vuelve a inferir desde el hecho agregado
+     */
+    @Test
+    void aggregationFollowsRuleOrder() {
+        String facts = """
+                p0(a). {0.4}
+                p1(a). {0.7}
+                p2(a). {0.2}
+                """;
+        String producer = "p1(X) :- p0(X). {0.1}\n";
+        String consumer = "p3(X) :- p2(X), p1(X). {0.1}\n";
+
+        ArgumentativeGraph producerFirst = buildTree(facts + producer + consumer);
+
+        // p1(a) = 0.4 + 0.1, sin agregar con el hecho inicial
+        assertEquals(List.of(0.5), values(producerFirst, "p1", null));
+        assertEquals(List.of(), values(producerFirst, "p3", null));
+
+        ArgumentativeGraph consumerFirst = buildTree(facts + consumer + producer);
+
+        // p1(a) = (0.4 + 0.1) * 0.7 y p3(a) = 0.2 + 0.35 + 0.1
+        assertEquals(List.of(0.35), values(consumerFirst, "p1", "p3"));
+        assertEquals(List.of(0.65), values(consumerFirst, "p3", null));
+    }
+
+    // Un hecho inicial sin aristas es verdadero y conserva sus valores
+    @Test
+    void queryReportsBaseFactWithoutEdges() {
+        QueryResult result = engine("p(a). {0.4}\nq(b). {0.3}\n").query("p", "a");
+
+        assertTrue(result.graph().edges().isEmpty());
+        assertEquals(1, result.goalFacts().size());
+        assertArrayEquals(new double[] {0.4}, result.goalFacts().getFirst().getAttributes());
+        assertTrue(result.contraryFacts().isEmpty());
+    }
+
+    // Un objetivo que no puede inferirse no tiene hechos
+    @Test
+    void queryReportsUnderivableGoalAsEmpty() {
+        QueryResult result = engine("p(a). {0.4}\nq(X) :- p(X), r(X). {0.1}\n").query("q", "a");
+
+        assertTrue(result.goalFacts().isEmpty());
+        assertTrue(result.graph().edges().isEmpty());
+    }
+
+    // Los valores de un objetivo inferido y atacado son los del grafo completo
+    @Test
+    void queryMatchesBuildTree() {
+        String program = """
+                p(a). {0.4}
+                s(a). {0.3}
+                p(b). {0.9}
+                q(X) :- p(X). {0.2}
+                ~q(X) :- s(X). {0.1}
+                """;
+        QueryResult result = engine(program).query("q", "a");
+        Fact expected = buildTree(program).edges().values().stream()
+                .flatMap(List::stream)
+                .filter(fact -> fact.toString().equals("q(a)."))
+                .findFirst()
+                .orElseThrow();
+
+        assertEquals(1, result.goalFacts().size());
+        assertEquals(1, result.contraryFacts().size());
+        assertArrayEquals(expected.getAttributes(), result.goalFacts().getFirst().getAttributes(), 1e-9);
+        assertArrayEquals(expected.getDeltaAttributes(), result.goalFacts().getFirst().getDeltaAttributes(), 1e-9);
+        assertEquals(1, result.graph().conflictiveNodes().size());
+    }
+
+    /**
+     * Con muchos atributos la agregacion se calcula con vectores y da lo
+     * mismo que el codigo escalar, incluidos los atributos que no completan
+     * un vector; si a un hecho le faltan atributos falla igual que este
+     */
+    @Test
+    void vectorAggregationMatchesScalar() {
+        int width = VectorFunctions.AGGREGATION_WIDTH + 3;
+        CompiledFunctions functions = new CompiledFunctions(ProgramParser.defaultFunctions(width));
+        InferenceEngine engine = new InferenceEngine(new ArrayList<>(), List.of(), functions);
+        double[] first = new double[width];
+        double[] second = new double[width];
+        double[] expected = new double[width];
+
+        for (int i = 0; i < width; i++) {
+            first[i] = (i % 7) / 6.0;
+            second[i] = (i % 5) / 4.0;
+            expected[i] = Math.min(1, Math.max(0, functions.aggregation(i).applyAsDouble(first[i], second[i])));
+        }
+
+        assertTrue(functions.isVectorized(CompiledFunctions.AGGREGATION));
+        assertArrayEquals(expected, engine.calculateAggregation(new Fact("p", "a", first), new Fact("p", "a", second)));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> engine.calculateAggregation(
+                new Fact("p", "a", first), new Fact("p", "a", Arrays.copyOf(second, width - 1))));
+    }
+
+    /**
+     * Una inferencia debajo del umbral se cuenta una unica vez aunque se
+     * vuelva a intentar: la regla con varias variables se evalua de nuevo
+     * sobre todas sus tuplas cuando se infiere e(a,c)
+     */
+    @Test
+    void thresholdCountsEachInferenceOnce() {
+        InferenceEngine engine = engine("""
+                e(a,b). {0.1}
+                f(a,c). {0.6}
+                p(a). {0.1}
+                q(X,Y) :- e(X,Y), p(X). {-0.5}
+                e(X,Y) :- f(X,Y). {0.0}
+                """);
+        engine.setPruning(new double[] {0.5}, 0);
+        engine.buildTree();
+
+        // q(a,b) se descarta en ambas pasadas y q(a,c) en la segunda
+        assertEquals(new PruningReport(2, 0, 6), engine.getPruningReport());
+    }
+
+    // El limite por predicado compara todos los argumentos, por lo que solo se admite en buildTree()
+    @Test
+    void topKRequiresSequentialBuild() {
+        String program = "p(a). {0.4}\nq(X) :- p(X). {0.1}\n";
+        InferenceEngine partitioned = engine(program);
+        InferenceEngine queried = engine(program);
+        partitioned.setPruning(null, 1);
+        queried.setPruning(null, 1);
+
+        assertThrows(IllegalStateException.class, () -> partitioned.buildTree(2));
+        assertThrows(IllegalStateException.class, () -> queried.query("q", "a"));
+    }
+
+    // Generar por argumentos sin hilos no tiene sentido
+    @Test
+    void partitionedBuildRejectsNonPositiveParallelism() {
+        String program = "p(a). {0.4}\nq(X) :- p(X). {0.1}\n";
+
+        assertThrows(IllegalArgumentException.class, () -> engine(program).buildTree(0));
+        assertThrows(IllegalArgumentException.class, () -> engine(program).buildSharedTree(-1));
+    }
+
+    private static InferenceEngine engine(String program) {
+        ProgramParser parser = new ProgramParser();
+        parser.parse(program);
+
+        return new InferenceEngine(parser.getFacts(), parser.getRules(), ProgramParser.defaultFunctions(1));
+    }
+
+    private static ArgumentativeGraph buildTree(String program) {
+        return engine(program).buildTree();
+    }
+
+    /**
+     * Valores de los hechos de un predicado que tienen aristas hacia un
+     * hecho de otro predicado, o de los que no tienen aristas salientes
+     * si no se indica el destino
+     */
+    private static List<Double> values(ArgumentativeGraph graph, String name, String target) {
+        return graph.edges().entrySet().stream()
+                .flatMap(entry -> entry.getValue().stream().map(fact -> Map.entry(entry.getKey(), fact)))
+                .map(edge -> target == null ? edge.getValue() : edge.getKey())
+                .filter(piece -> piece instanceof Fact fact && fact.getName().equals(name))
+                .filter(piece -> target == null
+                        ? !graph.edges().containsKey(piece)
+                        : graph.edges().get(piece).stream().anyMatch(fact -> fact.getName().equals(target)))
+                .distinct()
+                .map(KnowledgePiece::getAttributes)
+                .map(attributes -> Math.round(attributes[0] * 1e9) / 1e9)
+                .toList();
+    }
+}
@@ -0,0 +1,83 @@
+package InferenceEngine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import KnowledgePieces.Fact;
+import KnowledgePieces.ProgramParser;
+import KnowledgePieces.SymbolTable;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Regresion de las reglas con varias variables: cada combinacion de hechos
+ * que satisface el cuerpo es una inferencia propia, y las inferencias de
+ * la misma tupla se agregan. gp(a,c) se infiere por a-b-c con soporte 0.4
+ * y por a-d-c con soporte 0.2, y con agregacion X * Y debe valer 0.08,
+ * igual que el programa equivalente de una variable; no 0.6, el soporte
+ * de los cuatro hechos juntos
+ */
+class JoinAggregationTest {
+
+    private static final String PROGRAM = """
+            parent(a,b). {0.2}
+            parent(b,c). {0.2}
+            parent(a,d). {0.1}
+            parent(d,c). {0.1}
+            gp(X,Z) :- parent(X,Y), parent(Y,Z). {0.0}
+            """;
+
+    private static final double EXPECTED = 0.08;
+
+    @Test
+    void sequentialAggregatesEachJoin() {
+        assertAggregated(engine().buildTree());
+    }
+
+    @Test
+    void parallelAggregatesEachJoin() {
+        assertAggregated(engine().buildTree(4));
+    }
+
+    // Un hecho que une dos familias hace que se infieran juntas, con o sin grafo por argumentos
+    @Test
+    void assertedFactJoinsFamilies() {
+        String family = "parent(x,y). {0.3}\nparent(y,z). {0.3}\n";
+        String bridge = "parent(c,x). {0.5}\n";
+        List<String> expected = GeneratedPrograms.canonical(engine(PROGRAM + family + bridge).buildTree());
+
+        for (int parallelism : new int[] {2, 0}) {
+            InferenceEngine engine = engine(PROGRAM + family);
+
+            if (parallelism > 0) {
+                engine.buildTree(parallelism);
+            } else {
+                engine.buildTree();
+            }
+
+            assertEquals(expected, GeneratedPrograms.canonical(engine.assertFacts(GeneratedPrograms.parse(bridge).getFacts())));
+        }
+    }
+
+    private static InferenceEngine engine() {
+        return engine(PROGRAM);
+    }
+
+    private static InferenceEngine engine(String program) {
+        ProgramParser parser = new ProgramParser();
+        parser.parse(program);
+        return new InferenceEngine(parser.getFacts(), parser.getRules(), ProgramParser.defaultFunctions(1));
+    }
+
+    // Un unico gp(a,c) sin sucesores, con el valor agregado
+    private static void assertAggregated(ArgumentativeGraph graph) {
+        int goal = SymbolTable.atom(SymbolTable.intern("gp"), SymbolTable.intern("a,c"));
+        List<Fact> aggregated = graph.edges().values().stream()
+                .flatMap(List::stream)
+                .filter(fact -> fact.getAtomId() == goal && !graph.edges().containsKey(fact))
+                .distinct()
+                .toList();
+
+        assertEquals(1, aggregated.size());
+        assertEquals(EXPECTED, aggregated.getFirst().getAttributes()[0], 1e-9);
+    }
+}
@@ -0,0 +1,141 @@
+package InferenceEngine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import KnowledgePieces.Fact;
+import KnowledgePieces.Rule;
+import KnowledgePieces.SymbolTable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.DoubleBinaryOperator;
+import org.junit.jupiter.api.Test;
+
+class RuleCompilerTest {
+
+    /**
+     * El soporte generado da exactamente los mismos valores que la forma
+     * general, para cada operador estandar, cantidad de atributos y de
+     * antecedentes, incluidos valores fuera de [0, 1]
+     */
+    @Test
+    void supportMatchesGeneralForm() {
+        Random random = new Random(7);
+
+        for (StandardOperator operator : StandardOperator.values()) {
+            for (int width = 1; width <= 5; width++) {
+                for (int length = 1; length <= 3; length++) {
+                    DoubleBinaryOperator[] operators = new DoubleBinaryOperator[width];
+                    Arrays.fill(operators, operator);
+                    List<String> body = new ArrayList<>();
+                    List<Fact> antecedents = new ArrayList<>();
+
+                    for (int j = 0; j < length; j++) {
+                        body.add("b" + j);
+                        antecedents.add(new Fact("b" + j, "a", values(random, width)));
+                    }
+
+                    Rule rule = new Rule("h", body, values(random, width));
+                    double[] expected = support(operator, antecedents, rule);
+
+                    assertArrayEquals(expected, RuleCompiler.compile(rule, operators).support(antecedents),
+                            operator + " " + width + " " + length);
+                }
+            }
+        }
+    }
+
+    // Las funciones de exp4j y las cantidades no especializadas se dejan a la forma general
+    @Test
+    void supportFallsBackToGeneralForm() {
+        Rule rule = new Rule("h", List.of("b0", "b1"), new double[] {0.1, 0.2});
+        List<Fact> antecedents = List.of(new Fact("b0", "a", new double[] {0.3, 0.4}),
+                new Fact("b1", "a", new double[] {0.5, 0.6}));
+        CompiledFunctions functions = new CompiledFunctions(new String[][] {
+                {"X + Y", "X * Y", "X - Y"}, {"X + 2 * Y", "X * Y", "X - Y"}});
+        DoubleBinaryOperator[] expression = {functions.support(0), functions.support(1)};
+
+        assertNull(RuleCompiler.compile(rule, expression).support(antecedents));
+
+        CompiledRule compiled = RuleCompiler.compile(rule, new DoubleBinaryOperator[] {StandardOperator.ADD});
+        assertNull(compiled.support(antecedents.subList(0, 1)));
+        assertNull(compiled.support(antecedents));
+    }
+
+    /**
+     * La revision del cuerpo cuenta los hechos igual que la forma general:
+     * la regla se aplica si la cantidad total es la de antecedentes, aunque
+     * un predicado tenga dos hechos y otro ninguno
+     */
+    @Test
+    void bodyCountsFactsLikeGeneralForm() {
+        int p = SymbolTable.intern("p");
+        int q = SymbolTable.intern("q");
+        int a = SymbolTable.intern("a");
+        Fact first = new Fact("p", "a", new double[] {0.1});
+        Fact second = new Fact("p", "a", new double[] {0.2});
+        Fact other = new Fact("q", "a", new double[] {0.3});
+        CompiledRule compiled = RuleCompiler.compile(new Rule("h", List.of("p", "q"), new double[] {0.1}),
+                new DoubleBinaryOperator[] {StandardOperator.ADD});
+        List<Fact> antecedents = new ArrayList<>(List.of(other));
+
+        assertTrue(compiled.body(index(Map.of(p, List.of(first), q, List.of(other))), a, antecedents));
+        assertEquals(List.of(first, other), antecedents);
+        assertTrue(compiled.body(index(Map.of(p, List.of(first, second))), a, antecedents));
+        assertEquals(List.of(first, second), antecedents);
+        assertFalse(compiled.body(index(Map.of(p, List.of(first))), a, antecedents));
+        assertFalse(compiled.body(index(Map.of(p, List.of(first, second), q, List.of(other))), a, antecedents));
+        assertFalse(compiled.body(index(Map.of(q, List.of(other))), SymbolTable.intern("b"), antecedents));
+    }
+
+    // Los motores con el mismo programa y funciones reutilizan las clases generadas
+    @Test
+    void compiledRulesAreSharedBetweenEngines() {
+        List<Rule> rules = List.of(new Rule("h", List.of("b0", "b1"), new double[] {0.1, 0.2}));
+        List<Rule> same = List.of(new Rule("h", List.of("b0", "b1"), new double[] {0.1, 0.2}));
+        List<Rule> changed = List.of(new Rule("h", List.of("b0", "b1"), new double[] {0.1, 0.3}));
+        String[][] matrix = {{"X + Y", "X * Y", "X - Y"}, {"max(X, Y)", "X * Y", "X - Y"}};
+        String[][] other = {{"X * Y", "X * Y", "X - Y"}, {"max(X, Y)", "X * Y", "X - Y"}};
+
+        CompiledRule first = new CompiledFunctions(matrix).compile(rules).rule(rules.getFirst());
+
+        assertSame(first, new CompiledFunctions(matrix).compile(same).rule(same.getFirst()));
+        assertNotSame(first, new CompiledFunctions(other).compile(same).rule(same.getFirst()));
+        assertNotSame(first, new CompiledFunctions(matrix).compile(changed).rule(changed.getFirst()));
+    }
+
+    private static CompiledRule.FactIndex index(Map<Integer, List<Fact>> facts) {
+        int a = SymbolTable.intern("a");
+        return (predicate, argument) -> argument == a ? facts.getOrDefault(predicate, List.of()) : List.of();
+    }
+
+    private static double[] values(Random random, int width) {
+        double[] values = new double[width];
+
+        for (int i = 0; i < width; i++) {
+            values[i] = random.nextDouble() * 2 - 0.5;
+        }
+        return values;
+    }
+
+    // Forma general de InferenceEngine.support
+    private static double[] support(DoubleBinaryOperator operator, List<Fact> antecedents, Rule rule) {
+        double[] values = new double[antecedents.getFirst().getAttributes().length];
+
+        for (int i = 0; i < values.length; i++) {
+            for (Fact fact : antecedents) {
+                values[i] = operator.applyAsDouble(values[i], fact.getAttributes()[i]);
+            }
+            values[i] = RuleCompiler.clamp(operator.applyAsDouble(values[i], rule.getAttributes()[i]));
+        }
+        return values;
+    }
+}
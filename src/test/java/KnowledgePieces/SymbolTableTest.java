@@ -0,0 +1,58 @@
+package KnowledgePieces;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class SymbolTableTest {
+
+    /**
+     * Varios hilos registran los mismos simbolos, mas de los que entran en
+     * el arreglo inicial, mientras leen los ya registrados: cada simbolo
+     * recibe un unico identificador y se obtiene la misma cadena
+     */
+    @Test
+    void internsConcurrentlyAcrossGrowth() throws Exception {
+        List<String> symbols = IntStream.range(0, 5000).mapToObj(i -> "symbol-table-test-" + i).toList();
+        List<Callable<int[]>> tasks = IntStream.range(0, 8).<Callable<int[]>>mapToObj(t -> () -> {
+            int[] ids = new int[symbols.size()];
+
+            for (int i = 0; i < ids.length; i++) {
+                int s = (i + 625 * t) % ids.length;
+                ids[s] = SymbolTable.intern(symbols.get(s));
+                assertEquals(symbols.get(s), SymbolTable.symbol(ids[s]));
+            }
+            return ids;
+        }).toList();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<int[]>> results = executor.invokeAll(tasks);
+
+            for (Future<int[]> result : results) {
+                int[] ids = result.get();
+
+                for (int s = 0; s < ids.length; s++) {
+                    assertEquals(SymbolTable.intern(symbols.get(s)), ids[s]);
+                    assertSame(SymbolTable.symbol(ids[s]), SymbolTable.symbol(SymbolTable.intern(symbols.get(s))));
+                }
+            }
+        }
+    }
+
+    @Test
+    void factResolvesNamesFromIds() {
+        Fact fact = new Fact(SymbolTable.intern("owns"), SymbolTable.intern("ana,car"), new double[] {0.5});
+
+        assertEquals("owns", fact.getName());
+        assertEquals("ana,car", fact.getArgument());
+        assertEquals(List.of("ana", "car"), fact.getArguments());
+        assertEquals("owns(ana,car).", fact.toString());
+    }
+}